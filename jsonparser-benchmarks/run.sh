@@ -0,0 +1,8 @@
+#!/bin/sh
+# builds the library and the benchmarks, then runs every benchmark with the gc profiler.
+# extra arguments are passed to jmh, e.g. ./run.sh ParseBenchmark -p corpus=small
+set -e
+cd "$(dirname "$0")"
+mvn -B -q -f ../pom.xml install -DskipTests
+mvn -B -q package
+java -jar target/benchmarks.jar -prof gc -rf json -rff target/jmh-result.json "$@"
@@ -0,0 +1,24 @@
+package com.royston.jsonparser.benchmarks;
+
+import java.util.List;
+
+import com.royston.jsonparser.annotations.JsonProperty;
+
+/**
+ * the binding target for {@link Corpus#smallApiObject}
+ */
+public class ApiObject {
+
+    public static class Owner {
+        @JsonProperty("id") public int id;
+        @JsonProperty("email") public String email;
+    }
+
+    @JsonProperty("id") public int id;
+    @JsonProperty("name") public String name;
+    @JsonProperty("active") public boolean active;
+    @JsonProperty("score") public float score;
+    @JsonProperty("balance") public double balance;
+    @JsonProperty("tags") public List<String> tags;
+    @JsonProperty("owner") public Owner owner;
+}
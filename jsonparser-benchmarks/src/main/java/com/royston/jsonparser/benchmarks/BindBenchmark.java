@@ -0,0 +1,60 @@
+package com.royston.jsonparser.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.royston.jsonparser.parser.JsonParser;
+import com.royston.jsonparser.serialiser.Serialiser;
+import com.royston.jsonparser.serialiser.TypeInfo;
+import com.royston.jsonparser.structures.JsonStructure;
+
+/**
+ * measures binding parsed structures to classes and serialising classes back into structures,
+ * excluding the cost of tokenising and parsing the input
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BindBenchmark {
+
+    private static final TypeInfo<ApiObject> API_OBJECT = new TypeInfo<>(){};
+    private static final TypeInfo<double[]> DOUBLE_ARRAY = new TypeInfo<>(){};
+
+    private JsonStructure smallJson;
+    private JsonStructure numericJson;
+    private ApiObject smallObject;
+    private double[] numericArray;
+
+    @Setup
+    public void setup() {
+        smallJson = JsonParser.parseJson(Corpus.smallApiObject(new Random(1), 1));
+        numericJson = JsonParser.parseJson(Corpus.numericArray(10_000));
+        smallObject = Serialiser.deserialise(smallJson, API_OBJECT);
+        numericArray = Serialiser.deserialise(numericJson, DOUBLE_ARRAY);
+    }
+
+    @Benchmark
+    public ApiObject deserialiseSmall() {
+        return Serialiser.deserialise(smallJson, API_OBJECT);
+    }
+
+    @Benchmark
+    public double[] deserialiseNumeric() {
+        return Serialiser.deserialise(numericJson, DOUBLE_ARRAY);
+    }
+
+    @Benchmark
+    public JsonStructure serialiseSmall() {
+        return Serialiser.serialise(smallObject);
+    }
+
+    @Benchmark
+    public JsonStructure serialiseNumeric() {
+        return Serialiser.serialise(numericArray);
+    }
+}
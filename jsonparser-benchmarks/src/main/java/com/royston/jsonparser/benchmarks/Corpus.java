@@ -0,0 +1,105 @@
+package com.royston.jsonparser.benchmarks;
+
+import java.util.Random;
+
+/**
+ * deterministic json documents covering the workloads the benchmarks measure. every document is generated
+ * from a fixed seed so results are comparable between runs and machines
+ */
+public final class Corpus {
+
+    private static final long SEED = 0x5EED;
+
+    private Corpus(){}
+
+    /**
+     * @param name one of {@code small}, {@code deep}, {@code numeric} or {@code strings}
+     * @return the json document for the named workload
+     */
+    public static String document(String name) {
+        switch (name) {
+            case "small": return smallApiObject(new Random(SEED), 1);
+            case "deep": return deepNesting(200);
+            case "numeric": return numericArray(10_000);
+            case "strings": return stringHeavy(2_000);
+            default: throw new IllegalArgumentException("unknown corpus " + name);
+        }
+    }
+
+    /**
+     * a small api response object, matching {@link ApiObject}
+     */
+    public static String smallApiObject(Random random, int id) {
+        return "{\"id\": " + id
+            + ", \"name\": \"user-" + random.nextInt(100_000) + "\""
+            + ", \"active\": " + random.nextBoolean()
+            + ", \"score\": " + (random.nextInt(10_000) / 100 + 0.5)
+            + ", \"balance\": " + random.nextInt(1_000_000) + "." + (random.nextInt(9_000_000) + 1_000_000)
+            + ", \"tags\": [\"alpha\", \"beta\", \"gamma\"]"
+            + ", \"owner\": {\"id\": " + random.nextInt(1_000) + ", \"email\": \"owner" + random.nextInt(1_000) + "@example.com\"}"
+            + "}";
+    }
+
+    /**
+     * objects and arrays alternately nested to the given depth
+     */
+    public static String deepNesting(int depth) {
+        StringBuilder builder = new StringBuilder();
+        for (int i=0; i<depth; i++) builder.append(i % 2 == 0 ? "{\"level\": " + i + ", \"child\": " : "[" + i + ", ");
+        builder.append("null");
+        for (int i=depth - 1; i>=0; i--) builder.append(i % 2 == 0 ? "}" : "]");
+        return builder.toString();
+    }
+
+    /**
+     * a flat array of decimal numbers, matching {@code double[]}
+     */
+    public static String numericArray(int length) {
+        Random random = new Random(SEED);
+        StringBuilder builder = new StringBuilder("[");
+        for (int i=0; i<length; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(random.nextInt(1_000_000)).append('.').append(random.nextInt(9_000) + 1_000);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * an array of objects dominated by long string values
+     */
+    public static String stringHeavy(int length) {
+        Random random = new Random(SEED);
+        StringBuilder builder = new StringBuilder("[");
+        for (int i=0; i<length; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append("{\"title\": \"").append(words(random, 8))
+                   .append("\", \"body\": \"").append(words(random, 60))
+                   .append("\", \"quote\": \"said \\\"").append(words(random, 4)).append("\\\"\"}");
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * an array of small api objects of roughly the given size in bytes
+     */
+    public static String largeArray(long targetBytes) {
+        Random random = new Random(SEED);
+        StringBuilder builder = new StringBuilder((int)Math.min(Integer.MAX_VALUE - 8, targetBytes + 1024)).append('[');
+        int id = 0;
+        while (builder.length() < targetBytes) {
+            if (id > 0) builder.append(", ");
+            builder.append(smallApiObject(random, id++));
+        }
+        return builder.append(']').toString();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i=0; i<count; i++) {
+            if (i > 0) builder.append(' ');
+            int length = 3 + random.nextInt(8);
+            for (int j=0; j<length; j++) builder.append((char)('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package com.royston.jsonparser.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.royston.jsonparser.parser.JsonParser;
+import com.royston.jsonparser.structures.JsonStructure;
+
+/**
+ * measures parsing a single very large array of objects. each invocation is timed individually
+ * as one parse takes seconds, and the heap must be large enough to hold the input and the result
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LargeArrayBenchmark {
+
+    @Param({"100"})
+    public int megabytes;
+
+    private String json;
+
+    @Setup
+    public void setup() {
+        json = Corpus.largeArray(megabytes * 1024L * 1024L);
+    }
+
+    @Benchmark
+    public JsonStructure parseJson() {
+        return JsonParser.parseJson(json);
+    }
+}
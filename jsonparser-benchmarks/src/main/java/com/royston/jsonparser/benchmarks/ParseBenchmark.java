@@ -0,0 +1,43 @@
+package com.royston.jsonparser.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.royston.jsonparser.parser.JsonParser;
+import com.royston.jsonparser.parser.Token;
+import com.royston.jsonparser.parser.Tokeniser;
+import com.royston.jsonparser.structures.JsonStructure;
+
+/**
+ * measures the tokeniser on its own and the full string to {@link JsonStructure} parse
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"small", "deep", "numeric", "strings"})
+    public String corpus;
+
+    private String json;
+
+    @Setup
+    public void setup() {
+        json = Corpus.document(corpus);
+    }
+
+    @Benchmark
+    public List<Token> tokenise() {
+        return new Tokeniser(json).tokens;
+    }
+
+    @Benchmark
+    public JsonStructure parseJson() {
+        return JsonParser.parseJson(json);
+    }
+}
@@ -0,0 +1,38 @@
+package com.royston.jsonparser.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.royston.jsonparser.parser.JsonParser;
+import com.royston.jsonparser.structures.JsonStructure;
+
+/**
+ * measures writing a parsed structure back to a compact ({@code indent = 0}) or indented raw json string
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+
+    @Param({"small", "deep", "numeric", "strings"})
+    public String corpus;
+
+    @Param({"0", "4"})
+    public int indent;
+
+    private JsonStructure json;
+
+    @Setup
+    public void setup() {
+        json = JsonParser.parseJson(Corpus.document(corpus));
+    }
+
+    @Benchmark
+    public String write() {
+        return json.toString(indent);
+    }
+}
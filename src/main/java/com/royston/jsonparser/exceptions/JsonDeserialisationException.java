@@ -7,4 +7,8 @@ public class JsonDeserialisationException extends RuntimeException{
     public JsonDeserialisationException(String errorMessage){
         super(errorMessage);
     }
+
+    public JsonDeserialisationException(String errorMessage, Throwable cause){
+        super(errorMessage, cause);
+    }
 }
@@ -0,0 +1,10 @@
+package com.royston.jsonparser.exceptions;
+
+/**
+ * An exception that occurs when a JSON Patch is invalid or cannot be applied to the target document
+ */
+public class JsonPatchException extends RuntimeException{
+    public JsonPatchException(String errorMessage){
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,158 @@
+package com.royston.jsonparser.instrumentation;
+
+import java.lang.System.Logger.Level;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import com.royston.jsonparser.instrumentation.PhaseMetrics.Phase;
+
+import jdk.jfr.EventType;
+
+/**
+ * optional instrumentation of the parser, serialiser and writers. phases are only measured while a
+ * {@link JsonMetricsListener} is registered or a flight recording has the {@code com.royston.jsonparser.Phase} event enabled,
+ * otherwise {@link #start} returns null and instrumented code skips all measurement. the {@code jdk.jfr} and {@code jdk.management}
+ * modules are optional, so flight recorder events and allocation counts are only available when the runtime has them and,
+ * on the module path, they have been resolved e.g. with {@code --add-modules jdk.jfr,jdk.management}.
+ * example usage:
+ * <pre> JsonInstrumentation.addListener(metrics -> histogram(metrics.getPhase()).record(metrics.getDurationNanos())); </pre>
+ */
+public final class JsonInstrumentation {
+
+    private static final System.Logger LOGGER = System.getLogger(JsonInstrumentation.class.getName());
+    private static final boolean FLIGHT_RECORDER = isReadable("jdk.jfr");
+    private static final boolean THREAD_ALLOCATIONS = isReadable("jdk.management");
+    private static volatile JsonMetricsListener[] listeners = new JsonMetricsListener[0];
+
+    /**
+     * an in progress measurement of a single phase
+     */
+    public static final class Probe {
+        private final Phase phase;
+        private final JsonMetricsListener[] listeners;
+        private final JsonPhaseEvent event;
+        private final long startAllocated;
+        private final long startNanos;
+
+        private Probe(Phase phase, JsonMetricsListener[] listeners, JsonPhaseEvent event){
+            this.phase = phase;
+            this.listeners = listeners;
+            this.event = event;
+            this.startAllocated = allocatedBytes();
+            if (event != null) event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * completes the measurement and reports it to the listeners and flight recorder
+         * @param charsIn the number of json characters read, or -1
+         * @param charsOut the number of json characters written, or -1
+         * @param values the number of tokens or values processed, or -1
+         * @param maxDepth the deepest nesting seen, or -1
+         */
+        public void end(long charsIn, long charsOut, long values, int maxDepth) {
+            long duration = System.nanoTime() - startNanos;
+            long allocated = startAllocated < 0 ? -1 : allocatedBytes() - startAllocated;
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.phase = phase.name();
+                    event.allocatedBytes = allocated;
+                    event.charsIn = charsIn;
+                    event.charsOut = charsOut;
+                    event.values = values;
+                    event.maxDepth = maxDepth;
+                    event.commit();
+                }
+            }
+            if (listeners.length == 0) return;
+            PhaseMetrics metrics = new PhaseMetrics(phase, duration, allocated, charsIn, charsOut, values, maxDepth);
+            for (JsonMetricsListener listener : listeners) {
+                try {
+                    listener.onPhaseComplete(metrics);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "json metrics listener " + listener + " failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * looks up the flight recorder event type on first use, once the jdk.jfr module is known to be readable
+     */
+    private static final class Recording {
+        private static final EventType PHASE_EVENT = EventType.getEventType(JsonPhaseEvent.class);
+    }
+
+    /**
+     * loads the thread management bean on first measurement rather than when the parser is first used
+     */
+    private static final class Allocations {
+        private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+    }
+
+    private JsonInstrumentation(){}
+
+    /**
+     * registers a listener to receive the metrics of every completed phase. exceptions thrown by listeners are logged
+     * as warnings and do not stop the other listeners or the phase itself
+     * @param listener the listener to add
+     */
+    public static synchronized void addListener(JsonMetricsListener listener) {
+        JsonMetricsListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public static synchronized void removeListener(JsonMetricsListener listener) {
+        listeners = Arrays.stream(listeners).filter(l -> l != listener).toArray(JsonMetricsListener[]::new);
+    }
+
+    /**
+     * @return true if completed phases are currently being reported anywhere
+     */
+    public static boolean isEnabled() {
+        return listeners.length > 0 || isRecording();
+    }
+
+    /**
+     * starts measuring a phase if instrumentation is enabled
+     * @param phase the phase being measured
+     * @return the probe to end once the phase completes, or null if instrumentation is disabled
+     */
+    public static Probe start(Phase phase) {
+        JsonMetricsListener[] current = listeners;
+        boolean recording = isRecording();
+        if (current.length == 0 && !recording) return null;
+        return new Probe(phase, current, recording ? new JsonPhaseEvent() : null);
+    }
+
+    private static boolean isRecording() {
+        return FLIGHT_RECORDER && Recording.PHASE_EVENT.isEnabled();
+    }
+
+    private static long allocatedBytes() {
+        if (!THREAD_ALLOCATIONS) return -1;
+        return Allocations.THREADS != null ? Allocations.THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+        return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ? threads : null;
+    }
+
+    /**
+     * @param name the name of an optional module
+     * @return true if the module is present at runtime and this library can use it
+     */
+    private static boolean isReadable(String name) {
+        Module self = JsonInstrumentation.class.getModule();
+        ModuleLayer layer = self.getLayer() != null ? self.getLayer() : ModuleLayer.boot();
+        return layer.findModule(name).map(self::canRead).orElse(false);
+    }
+}
@@ -0,0 +1,14 @@
+package com.royston.jsonparser.instrumentation;
+
+/**
+ * receives the metrics of each completed (de)serialisation phase. register with {@link JsonInstrumentation#addListener}.
+ * listeners are called synchronously on the thread that ran the phase, so implementations should be fast and thread safe
+ */
+@FunctionalInterface
+public interface JsonMetricsListener {
+    /**
+     * called once a phase has completed
+     * @param metrics the measurements of the completed phase
+     */
+    public void onPhaseComplete(PhaseMetrics metrics);
+}
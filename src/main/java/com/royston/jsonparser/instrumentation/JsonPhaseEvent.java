@@ -0,0 +1,38 @@
+package com.royston.jsonparser.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * a java flight recorder event emitted for each completed phase while a recording has it enabled
+ */
+@Name("com.royston.jsonparser.Phase")
+@Label("Json Phase")
+@Description("A tokenise, parse, (de)serialise or write phase of the json parser")
+@Category("JsonParser")
+@StackTrace(false)
+class JsonPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Characters In")
+    long charsIn;
+
+    @Label("Characters Out")
+    long charsOut;
+
+    @Label("Values")
+    long values;
+
+    @Label("Max Depth")
+    int maxDepth;
+}
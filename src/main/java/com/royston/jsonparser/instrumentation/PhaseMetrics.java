@@ -0,0 +1,84 @@
+package com.royston.jsonparser.instrumentation;
+
+/**
+ * the measurements of a single tokenise, parse, (de)serialise or write phase. counts that do not apply to a phase are {@code -1}
+ */
+public class PhaseMetrics {
+
+    public enum Phase
+    {
+        TOKENISE,
+        PARSE,
+        DESERIALISE,
+        SERIALISE,
+        WRITE
+    };
+
+    private final Phase phase;
+    private final long durationNanos;
+    private final long allocatedBytes;
+    private final long charsIn;
+    private final long charsOut;
+    private final long values;
+    private final int maxDepth;
+
+    PhaseMetrics(Phase phase, long durationNanos, long allocatedBytes, long charsIn, long charsOut, long values, int maxDepth){
+        this.phase = phase;
+        this.durationNanos = durationNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.charsIn = charsIn;
+        this.charsOut = charsOut;
+        this.values = values;
+        this.maxDepth = maxDepth;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the bytes allocated by the calling thread during the phase, or -1 if the jvm does not support measuring it
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the number of json characters read by the phase
+     */
+    public long getCharsIn() {
+        return charsIn;
+    }
+
+    /**
+     * @return the number of json characters written by the phase
+     */
+    public long getCharsOut() {
+        return charsOut;
+    }
+
+    /**
+     * @return the number of tokens or json values produced or consumed by the phase, or -1 for the (de)serialise and write phases
+     * as counting them would mean walking the json again
+     */
+    public long getValues() {
+        return values;
+    }
+
+    /**
+     * @return the deepest nesting of objects and arrays seen by the phase, or -1 for the (de)serialise and write phases
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return phase + "[durationNanos=" + durationNanos + ", allocatedBytes=" + allocatedBytes + ", charsIn=" + charsIn
+            + ", charsOut=" + charsOut + ", values=" + values + ", maxDepth=" + maxDepth + "]";
+    }
+}
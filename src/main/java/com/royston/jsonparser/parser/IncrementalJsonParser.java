@@ -0,0 +1,215 @@
+package com.royston.jsonparser.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+import com.royston.jsonparser.parser.Token.TOKEN;
+import com.royston.jsonparser.structures.*;
+
+/**
+ * a resumable, non-blocking json parser that accepts utf-8 input in chunks and builds the {@link JsonStructure} as data arrives.
+ * example usage:
+ * <pre>
+ * IncrementalJsonParser parser = new IncrementalJsonParser();
+ * while (channel.read(buffer) > 0) { buffer.flip(); parser.feed(buffer); buffer.clear(); }
+ * JsonStructure json = parser.endOfInput();
+ * </pre>
+ * instances are not thread safe and are intended to be owned by a single connection
+ */
+public class IncrementalJsonParser {
+
+    public enum Status
+    {
+        NEED_MORE_INPUT,
+        COMPLETE
+    };
+
+    private enum LexState {
+        DEFAULT,
+        STRING,
+        STRING_ESCAPE,
+        NUMBER,
+        LITERAL
+    }
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                                            .onMalformedInput(CodingErrorAction.REPORT)
+                                            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+    private final StructureBuilder builder;
+    private final StringBuilder text = new StringBuilder();
+    private byte[] carry = new byte[0];
+
+    private LexState lexState = LexState.DEFAULT;
+    private String literal;
+    private int literalIndex;
+    private TOKEN literalType;
+    private boolean ended = false;
+
+    public IncrementalJsonParser(){
+        this(JsonParser.DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param maxDepth the maximum nesting depth of objects and arrays before parsing fails
+     */
+    public IncrementalJsonParser(int maxDepth){
+        this.builder = new StructureBuilder(maxDepth);
+    }
+
+    /**
+     * consumes all remaining bytes of the buffer, advancing its position to its limit.
+     * incomplete tokens and multi-byte characters split across chunks are kept until the next call
+     * @param input the next chunk of utf-8 encoded json
+     * @return {@link Status#COMPLETE} once the root object or array has been closed, otherwise {@link Status#NEED_MORE_INPUT}
+     * @throws InvalidJsonException the input seen so far is not valid json
+     */
+    public Status feed(ByteBuffer input) throws InvalidJsonException {
+        if (ended) throw new IllegalStateException("endOfInput has already been called");
+        ByteBuffer in = input;
+        if (carry.length > 0) {
+            in = ByteBuffer.allocate(carry.length + input.remaining());
+            in.put(carry).put(input).flip();
+        }
+        decode(in, false);
+        carry = new byte[in.remaining()];
+        in.get(carry);
+        return status();
+    }
+
+    /**
+     * signals that no more input will arrive and completes any token still in progress
+     * @return the parsed {@link JsonStructure}
+     * @throws InvalidJsonException the input ended before the json was complete
+     */
+    public JsonStructure endOfInput() throws InvalidJsonException {
+        if (!ended) {
+            ended = true;
+            decode(ByteBuffer.wrap(carry), true);
+            carry = new byte[0];
+            if (lexState == LexState.NUMBER) emitText(TOKEN.NUMBER);
+            if (lexState != LexState.DEFAULT) throw new InvalidJsonException("unexpected end of json input");
+        }
+        if (!builder.isComplete()) throw new InvalidJsonException("unexpected end of json input");
+        return builder.getResult();
+    }
+
+    /**
+     * @return the current parsing status without consuming any input
+     */
+    public Status status() {
+        return builder.isComplete() ? Status.COMPLETE : Status.NEED_MORE_INPUT;
+    }
+
+    /**
+     * @return the parsed {@link JsonStructure}, or null if the root has not been closed yet
+     */
+    public JsonStructure getResult() {
+        return builder.getResult();
+    }
+
+    /**
+     * @return the number of values, including objects and arrays, parsed so far
+     */
+    long valueCount() {
+        return builder.valueCount();
+    }
+
+    /**
+     * @return the deepest nesting of objects and arrays seen so far
+     */
+    int deepest() {
+        return builder.deepest();
+    }
+
+    private void decode(ByteBuffer in, boolean endOfInput) throws InvalidJsonException {
+        while (true) {
+            CoderResult result = decoder.decode(in, chars, endOfInput);
+            if (result.isError()) throw new InvalidJsonException("json input is not valid utf-8");
+            scan();
+            if (result.isUnderflow()) break;
+        }
+        if (endOfInput) {
+            if (decoder.flush(chars).isError()) throw new InvalidJsonException("json input is not valid utf-8");
+            scan();
+        }
+    }
+
+    private void scan() throws InvalidJsonException {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+            switch (lexState) {
+                case STRING:
+                    if (c == '"') emitText(TOKEN.STRING);
+                    else {
+                        text.append(c);
+                        if (c == '\\') lexState = LexState.STRING_ESCAPE;
+                    }
+                    break;
+                case STRING_ESCAPE:
+                    text.append(c);
+                    lexState = LexState.STRING;
+                    break;
+                case NUMBER:
+                    if (isNumberChar(c)) { text.append(c); break; }
+                    emitText(TOKEN.NUMBER);
+                    scanDefault(c);
+                    break;
+                case LITERAL:
+                    if (c != literal.charAt(literalIndex++)) throw new InvalidJsonException("Invalid Json");
+                    if (literalIndex == literal.length()) {
+                        lexState = LexState.DEFAULT;
+                        builder.accept(literalType, literal);
+                    }
+                    break;
+                default:
+                    scanDefault(c);
+            }
+        }
+        chars.clear();
+    }
+
+    private void scanDefault(char c) throws InvalidJsonException {
+        switch (c) {
+            case '{': builder.accept(TOKEN.CURLY_OPEN, "{"); break;
+            case '}': builder.accept(TOKEN.CURLY_CLOSE, "}"); break;
+            case '[': builder.accept(TOKEN.ARRAY_OPEN, "["); break;
+            case ']': builder.accept(TOKEN.ARRAY_CLOSE, "]"); break;
+            case ':': builder.accept(TOKEN.COLON, ":"); break;
+            case ',': builder.accept(TOKEN.COMMA, ","); break;
+            case '"': lexState = LexState.STRING; break;
+            case 'n': startLiteral("null", TOKEN.NULL_TYPE); break;
+            case 't': startLiteral("true", TOKEN.BOOLEAN); break;
+            case 'f': startLiteral("false", TOKEN.BOOLEAN); break;
+            case ' ': case '\n': case '\r': case '\t': break;
+            default:
+                if (!isNumberChar(c)) throw new InvalidJsonException("Invalid Json");
+                text.append(c);
+                lexState = LexState.NUMBER;
+        }
+    }
+
+    private void startLiteral(String value, TOKEN type) {
+        literal = value;
+        literalIndex = 1;
+        literalType = type;
+        lexState = LexState.LITERAL;
+    }
+
+    private void emitText(TOKEN type) throws InvalidJsonException {
+        String value = text.toString();
+        text.setLength(0);
+        lexState = LexState.DEFAULT;
+        builder.accept(type, value);
+    }
+
+    private static boolean isNumberChar(char c) {
+        return c == '-' || (c >= '0' && c <= '9') || c == '.';
+    }
+}
@@ -0,0 +1,241 @@
+package com.royston.jsonparser.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+import com.royston.jsonparser.exceptions.JsonDeserialisationException;
+import com.royston.jsonparser.parser.Token.TOKEN;
+import com.royston.jsonparser.serialiser.*;
+import com.royston.jsonparser.structures.*;
+
+/**
+ * publishes the elements of a json array as a {@link Flow.Publisher}, deserialising each element into a user defined class.
+ * the input is only read as far as subscriber demand requires, so at most one element is held in memory at a time.
+ * example usage:
+ * <pre> Flow.Publisher<MyClass> publisher = new JsonArrayPublisher<>(reader, new TypeInfo<>(){}, "data", "items"); </pre>
+ * the publisher is unicast as the reader can only be consumed once, and null elements are skipped as they cannot be signalled
+ * @param <T> the type each array element is deserialised into
+ */
+public class JsonArrayPublisher<T> implements Flow.Publisher<T> {
+
+    private final Reader reader;
+    private final TypeInfo<T> elementType;
+    private final String[] path;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    /**
+     * creates a publisher that emits elements on the thread requesting them
+     * @param reader the source of the json document
+     * @param elementType the type info of each array element
+     * @param path the object keys leading from the root to the array, empty if the root is the array
+     */
+    public JsonArrayPublisher(Reader reader, TypeInfo<T> elementType, String... path){
+        this(reader, elementType, Runnable::run, path);
+    }
+
+    /**
+     * creates a publisher that reads and emits elements using the given executor
+     * @param reader the source of the json document
+     * @param elementType the type info of each array element
+     * @param executor the executor used to read, deserialise and emit elements
+     * @param path the object keys leading from the root to the array, empty if the root is the array
+     */
+    public JsonArrayPublisher(Reader reader, TypeInfo<T> elementType, Executor executor, String... path){
+        this.reader = reader;
+        this.elementType = elementType;
+        this.executor = executor;
+        this.path = path;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber cannot be null");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {}
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("JsonArrayPublisher only supports a single subscriber"));
+            return;
+        }
+        new ElementSubscription(subscriber).start();
+    }
+
+    private final class ElementSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final TokenReader tokens = new TokenReader(reader);
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable requestError;
+        private boolean positioned = false;
+        private boolean firstElement = true;
+        private boolean exhausted = false;
+
+        private ElementSubscription(Flow.Subscriber<? super T> subscriber){
+            this.subscriber = subscriber;
+        }
+
+        private void start() {
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) return;
+            if (n <= 0) requestError = new IllegalArgumentException("request amount must be positive");
+            else {
+                long current, updated;
+                do {
+                    current = demand.get();
+                    updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, updated));
+            }
+            if (pending.getAndIncrement() == 0) executor.execute(this::drain);
+        }
+
+        /**
+         * stops emitting elements. the reader is closed by {@link #drain} rather than here, as it may be reading from it on another thread
+         */
+        @Override
+        public void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            if (pending.getAndIncrement() == 0) executor.execute(this::drain);
+        }
+
+        /**
+         * emits elements while there is outstanding demand. re-entrant calls to {@link #request} from
+         * {@code onNext} only increase the demand, so the subscriber's stack never grows per element.
+         * every signal, including the error for an invalid request amount, is sent from here so they are never concurrent,
+         * and the reader is only ever read and closed from here
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    closeQuietly();
+                    return;
+                }
+                if (requestError != null) {
+                    fail(requestError);
+                    return;
+                }
+                while (!cancelled && requestError == null && demand.get() > 0) {
+                    T element;
+                    try {
+                        if (!advance()) {
+                            cancelled = true;
+                            closeQuietly();
+                            subscriber.onComplete();
+                            return;
+                        }
+                        element = readElement();
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                        return;
+                    }
+                    if (element == null) continue;
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(element);
+                    } catch (RuntimeException e) {
+                        fail(e);
+                        return;
+                    }
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * moves the reader onto the first token of the next array element
+         * @return false if the array has no more elements
+         */
+        private boolean advance() throws IOException {
+            if (exhausted) return false;
+            if (!positioned) {
+                positionAtArray();
+                positioned = true;
+            }
+            if (!tokens.next()) throw new InvalidJsonException("unexpected end of json input");
+            if (firstElement) {
+                firstElement = false;
+                if (tokens.type == TOKEN.ARRAY_CLOSE) { exhausted = true; return false; }
+                return true;
+            }
+            if (tokens.type == TOKEN.ARRAY_CLOSE) { exhausted = true; return false; }
+            if (tokens.type != TOKEN.COMMA) throw new InvalidJsonException("Invalid Json");
+            if (!tokens.next()) throw new InvalidJsonException("unexpected end of json input");
+            return true;
+        }
+
+        /**
+         * reads tokens from the root until the opening token of the array at the requested path has been consumed
+         */
+        private void positionAtArray() throws IOException {
+            if (!tokens.next()) throw new InvalidJsonException("json string does not start with an object or array");
+            for (String key : path) {
+                if (tokens.type != TOKEN.CURLY_OPEN) throw new JsonDeserialisationException("no json object containing the key " + key);
+                boolean found = false;
+                while (!found) {
+                    if (!tokens.next()) throw new InvalidJsonException("unexpected end of json input");
+                    if (tokens.type == TOKEN.CURLY_CLOSE) throw new JsonDeserialisationException("key " + key + " does not exist in the json");
+                    if (tokens.type == TOKEN.COMMA && !tokens.next()) throw new InvalidJsonException("unexpected end of json input");
+                    if (tokens.type != TOKEN.STRING) throw new InvalidJsonException("Invalid Json");
+                    found = tokens.value.equals(key);
+                    if (!tokens.next() || tokens.type != TOKEN.COLON) throw new InvalidJsonException("Invalid Json");
+                    if (!tokens.next()) throw new InvalidJsonException("unexpected end of json input");
+                    if (!found) tokens.skipValue();
+                }
+            }
+            if (tokens.type != TOKEN.ARRAY_OPEN) throw new JsonDeserialisationException("the value at the given path is not a json array");
+        }
+
+        /**
+         * closes the reader and signals the error, unless the subscription has already been cancelled
+         */
+        private void fail(Throwable error) {
+            boolean signal = !cancelled;
+            cancelled = true;
+            closeQuietly();
+            if (signal) subscriber.onError(error);
+        }
+
+        /**
+         * parses the element starting at the current token and deserialises it into the element type
+         */
+        private T readElement() throws IOException {
+            if (tokens.type == TOKEN.CURLY_OPEN || tokens.type == TOKEN.ARRAY_OPEN) {
+                StructureBuilder builder = new StructureBuilder();
+                builder.accept(tokens.type, tokens.value);
+                while (!builder.isComplete()) {
+                    if (!tokens.next()) throw new InvalidJsonException("unexpected end of json input");
+                    builder.accept(tokens.type, tokens.value);
+                }
+                return Serialiser.deserialise(builder.getResult(), elementType);
+            }
+            switch (tokens.type) {
+                case STRING: return Serialiser.deserialiseValue(tokens.value, elementType);
+                case NUMBER: return Serialiser.deserialiseValue(JsonParser.parseNumber(tokens.value), elementType);
+                case BOOLEAN: return Serialiser.deserialiseValue(Boolean.valueOf("true".equals(tokens.value)), elementType);
+                case NULL_TYPE: return null;
+                default: throw new InvalidJsonException("Invalid Json");
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                tokens.close();
+            } catch (IOException e) {}
+        }
+    }
+}
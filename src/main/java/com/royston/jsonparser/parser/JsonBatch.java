@@ -0,0 +1,188 @@
+package com.royston.jsonparser.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+import com.royston.jsonparser.exceptions.JsonDeserialisationException;
+import com.royston.jsonparser.exceptions.JsonSerialisationException;
+import com.royston.jsonparser.serialiser.*;
+import com.royston.jsonparser.structures.*;
+
+/**
+ * (de)serialises many independent json documents in parallel, returning the results in input order.
+ * reflective class metadata is shared between all items, so only the first document of each type pays for it.
+ * example usage:
+ * <pre>
+ * JsonBatch batch = new JsonBatch(Executors.newVirtualThreadPerTaskExecutor(), JsonBatch.ErrorMode.CAPTURE, 64);
+ * List<JsonBatch.Result<MyClass>> results = batch.deserialiseAll(documents, new TypeInfo<>(){});
+ * </pre>
+ */
+public class JsonBatch {
+
+    public enum ErrorMode
+    {
+        FAIL_FAST,
+        CAPTURE
+    };
+
+    /**
+     * the outcome of (de)serialising a single item of a batch
+     * @param <T> the type of the result value
+     */
+    public static class Result<T> {
+        private final T value;
+        private final RuntimeException error;
+
+        private Result(T value, RuntimeException error){
+            this.value = value;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * @return the result value
+         * @throws RuntimeException the exception captured while processing the item
+         */
+        public T get() {
+            if (error != null) throw error;
+            return value;
+        }
+
+        /**
+         * @return the exception captured while processing the item, or null if it succeeded
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
+    private final Executor executor;
+    private final ErrorMode errorMode;
+    private final int chunkSize;
+
+    /**
+     * creates a fail fast batch running on the common fork join pool
+     */
+    public JsonBatch(){
+        this(ForkJoinPool.commonPool(), ErrorMode.FAIL_FAST, 64);
+    }
+
+    /**
+     * @param executor the executor to run the batch on alongside the calling thread, e.g. a fork join pool or a virtual thread per task executor
+     * @param errorMode whether to stop at the first failing item or to capture the error of each item
+     * @param chunkSize the number of items a thread claims at a time
+     */
+    public JsonBatch(Executor executor, ErrorMode errorMode, int chunkSize){
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be at least 1");
+        this.executor = executor;
+        this.errorMode = errorMode;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * parses and deserialises each document into a user defined class structure
+     * @param <T> a user defined class that stores the json data
+     * @param documents the json documents, each either a {@link String} or utf-8 encoded {@code byte[]}
+     * @param outputType a holder class to pass in the type details for the deserialiser to read
+     * @return a result per document in input order
+     * @throws InvalidJsonException a json document is invalid and the error mode is {@link ErrorMode#FAIL_FAST}
+     * @throws JsonDeserialisationException a document cannot be deserialised and the error mode is {@link ErrorMode#FAIL_FAST}
+     */
+    public <T> List<Result<T>> deserialiseAll(Collection<?> documents, TypeInfo<T> outputType) throws InvalidJsonException, JsonDeserialisationException {
+        return run(documents, document -> {
+            if (document instanceof String) return JsonParser.deserialiseFromJsonString((String)document, outputType);
+            if (document instanceof byte[]) return JsonParser.deserialiseFromJsonString(new String((byte[])document, StandardCharsets.UTF_8), outputType);
+            throw new IllegalArgumentException("documents must be either a String or a byte[]");
+        });
+    }
+
+    /**
+     * serialises each object into a compact raw json string
+     * @param objects the objects to serialise
+     * @return a result per object in input order
+     * @throws JsonSerialisationException an object cannot be serialised and the error mode is {@link ErrorMode#FAIL_FAST}
+     */
+    public List<Result<String>> serialiseAll(Collection<?> objects) throws JsonSerialisationException {
+        return serialiseAll(objects, 0);
+    }
+
+    /**
+     * serialises each object into a raw json string
+     * @param objects the objects to serialise
+     * @param indentAmount the amount of spaces to add for each indentation block
+     * @return a result per object in input order
+     * @throws JsonSerialisationException an object cannot be serialised and the error mode is {@link ErrorMode#FAIL_FAST}
+     */
+    public List<Result<String>> serialiseAll(Collection<?> objects, int indentAmount) throws JsonSerialisationException {
+        return run(objects, object -> {
+            JsonStructure json = Serialiser.serialise(object);
+            return json != null ? json.toString(indentAmount) : "null";
+        });
+    }
+
+    /**
+     * splits the items into chunks that are claimed one at a time by the submitted tasks and by the calling thread, which works
+     * through chunks until none are left before waiting. the caller only ever waits for chunks already running on another thread,
+     * so a batch started from a task on the same executor, e.g. a bounded pool or a nested batch, cannot starve or deadlock it
+     */
+    private <T> List<Result<T>> run(Collection<?> items, Function<Object, T> task) {
+        Object[] inputs = items.toArray();
+        List<Result<T>> results = new ArrayList<>(Collections.nCopies(inputs.length, null));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int chunks = (inputs.length + chunkSize - 1) / chunkSize;
+        AtomicInteger nextChunk = new AtomicInteger();
+        CountDownLatch remaining = new CountDownLatch(chunks);
+        Runnable work = () -> {
+            for (int chunk = nextChunk.getAndIncrement(); chunk < chunks; chunk = nextChunk.getAndIncrement()) {
+                int from = chunk * chunkSize;
+                int to = Math.min(from + chunkSize, inputs.length);
+                try {
+                    for (int i=from; i<to && failure.get() == null; i++) {
+                        try {
+                            results.set(i, new Result<>(task.apply(inputs[i]), null));
+                        } catch (RuntimeException e) {
+                            if (errorMode == ErrorMode.FAIL_FAST) failure.compareAndSet(null, e);
+                            else results.set(i, new Result<>(null, e));
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    remaining.countDown();
+                }
+            }
+        };
+        for (int helper=1; helper<chunks; helper++) {
+            try {
+                executor.execute(work);
+            } catch (RuntimeException e) {
+                break;
+            }
+        }
+        work.run();
+        try {
+            remaining.await();
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new CancellationException("batch was interrupted"));
+            Thread.currentThread().interrupt();
+        }
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) throw (RuntimeException)error;
+        if (error instanceof Error) throw (Error)error;
+        return results;
+    }
+}
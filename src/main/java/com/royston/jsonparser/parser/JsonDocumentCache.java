@@ -0,0 +1,322 @@
+package com.royston.jsonparser.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+import com.royston.jsonparser.exceptions.JsonDeserialisationException;
+import com.royston.jsonparser.serialiser.*;
+import com.royston.jsonparser.structures.*;
+
+/**
+ * an opt-in, size bounded cache of parsed and deserialised documents. strings and byte arrays are keyed by a sha-256 hash of their
+ * content and files by their path, modification time and size, combined with the requested output type. parsed structures are
+ * cached frozen so they can be shared safely, while deserialised objects are shared as-is and must be treated as read-only.
+ * concurrent misses for the same key wait for a single parse rather than each parsing the document. hits never take a lock, and
+ * eviction approximates least recently used order with the clock algorithm: documents are evicted in insertion order, except
+ * that a document read since it was last considered is kept for another round.
+ * example usage:
+ * <pre>
+ * JsonDocumentCache cache = new JsonDocumentCache(1000);
+ * MyJsonObject obj = cache.deserialiseJsonFromFile(file, new TypeInfo<>(){});
+ * </pre>
+ */
+public class JsonDocumentCache {
+
+    /**
+     * a snapshot of the cache counters
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        private Stats(long hits, long misses, long evictions, int size){
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double)hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + "]";
+        }
+    }
+
+    private static final class Key {
+        private final Object source;
+        private final long modified;
+        private final long size;
+        private final Type type;
+        private final int hash;
+
+        private Key(Object source, long modified, long size, Type type){
+            this.source = source;
+            this.modified = modified;
+            this.size = size;
+            this.type = type;
+            this.hash = Objects.hash(source, modified, size, type);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Key)) return false;
+            Key key = (Key)other;
+            return hash == key.hash && modified == key.modified && size == key.size && source.equals(key.source) && Objects.equals(type, key.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * a cached document, which is loaded by the first thread to request it while later requests wait on the future
+     */
+    private static final class CachedDocument {
+        private final Key key;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private volatile boolean referenced = false;
+
+        private CachedDocument(Key key){
+            this.key = key;
+        }
+    }
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<Key, CachedDocument> entries = new ConcurrentHashMap<>();
+    private final ArrayDeque<CachedDocument> clock = new ArrayDeque<>();
+    private final Map<Key, Key> currentFileKeys = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maximumSize the maximum number of documents to keep, evicting documents that have not been read recently once exceeded
+     */
+    public JsonDocumentCache(int maximumSize){
+        if (maximumSize < 1) throw new IllegalArgumentException("maximumSize must be at least 1");
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * parses a json string, or returns the frozen structure cached for identical content
+     * @param jsonString the raw json string to parse
+     * @return a frozen {@link JsonStructure} containing the parsed data
+     * @throws InvalidJsonException the json string is not valid
+     */
+    public JsonStructure parseJson(String jsonString) throws InvalidJsonException {
+        return (JsonStructure)get(new Key(digest(jsonString.getBytes(StandardCharsets.UTF_8)), 0, jsonString.length(), null), () -> JsonParser.parseJson(jsonString).freeze());
+    }
+
+    /**
+     * parses and deserialises a json string, or returns the instance cached for identical content and output type
+     * @param <T> a user defined class that stores the json data
+     * @param jsonString the raw json string to parse and deserialise
+     * @param outputType a holder class to pass in the type details for the deserialiser to read
+     * @return a shared instance of the user defined class structure containing the deserialised json data
+     * @throws InvalidJsonException json string is invalid
+     * @throws JsonDeserialisationException data cannot be deserialised into the given class structure
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T deserialiseFromJsonString(String jsonString, TypeInfo<T> outputType) throws InvalidJsonException, JsonDeserialisationException {
+        Key key = new Key(digest(jsonString.getBytes(StandardCharsets.UTF_8)), 0, jsonString.length(), outputType.getType());
+        return (T)get(key, () -> JsonParser.deserialiseFromJsonString(jsonString, outputType));
+    }
+
+    /**
+     * parses and deserialises utf-8 encoded json, or returns the instance cached for identical content and output type
+     * @param <T> a user defined class that stores the json data
+     * @param jsonBytes the utf-8 encoded json to parse and deserialise
+     * @param outputType a holder class to pass in the type details for the deserialiser to read
+     * @return a shared instance of the user defined class structure containing the deserialised json data
+     * @throws InvalidJsonException json is invalid
+     * @throws JsonDeserialisationException data cannot be deserialised into the given class structure
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T deserialiseFromJsonBytes(byte[] jsonBytes, TypeInfo<T> outputType) throws InvalidJsonException, JsonDeserialisationException {
+        Key key = new Key(digest(jsonBytes), 0, jsonBytes.length, outputType.getType());
+        return (T)get(key, () -> JsonParser.deserialiseFromJsonString(new String(jsonBytes, StandardCharsets.UTF_8), outputType));
+    }
+
+    /**
+     * reads, parses and deserialises a json file, or returns the instance cached for the file's current modification time and size.
+     * entries for older versions of the file are dropped once a changed version is read
+     * @param <T> a user defined class that stores the json data
+     * @param file the json file to read
+     * @param outputType a holder class to pass in the type details for the deserialiser to read
+     * @return a shared instance of the user defined class structure containing the deserialised json data, otherwise null if file cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T deserialiseJsonFromFile(File file, TypeInfo<T> outputType) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            String path = file.getAbsolutePath();
+            Key key = new Key(path, attributes.lastModifiedTime().toMillis(), attributes.size(), outputType.getType());
+            Key previous = currentFileKeys.put(new Key(path, 0, 0, outputType.getType()), key);
+            if (previous != null && !previous.equals(key)) entries.remove(previous);
+            return (T)get(key, () -> {
+                try {
+                    String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                    return JsonParser.deserialiseFromJsonString(json, outputType);
+                } catch (IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            });
+        } catch (IOException | CompletionException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * removes every cached version of a file
+     * @param file the file to invalidate
+     */
+    public void invalidate(File file) {
+        String path = file.getAbsolutePath();
+        Iterator<Map.Entry<Key, Key>> iterator = currentFileKeys.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Key> entry = iterator.next();
+            if (!entry.getKey().source.equals(path)) continue;
+            entries.remove(entry.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * removes every cached document
+     */
+    public void clear() {
+        entries.clear();
+        currentFileKeys.clear();
+        synchronized (clock) {
+            clock.clear();
+        }
+    }
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counters
+     */
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), entries.size());
+    }
+
+    /**
+     * looks up a cached value, loading it on the calling thread if this is the first request for the key.
+     * a failed load is removed from the cache and rethrown to every waiting caller, while a successful one joins the clock
+     */
+    private Object get(Key key, Supplier<Object> loader) {
+        CachedDocument document = entries.get(key);
+        if (document == null) {
+            CachedDocument created = new CachedDocument(key);
+            document = entries.putIfAbsent(key, created);
+            if (document == null) return load(created, loader);
+        }
+        if (!document.referenced) document.referenced = true;
+        hits.incrementAndGet();
+        return join(document.future);
+    }
+
+    private Object load(CachedDocument document, Supplier<Object> loader) {
+        misses.incrementAndGet();
+        try {
+            document.future.complete(loader.get());
+        } catch (RuntimeException e) {
+            if (entries.remove(document.key, document)) forgetFile(document.key);
+            document.future.completeExceptionally(e);
+            return join(document.future);
+        }
+        synchronized (clock) {
+            clock.addLast(document);
+            evict();
+        }
+        return join(document.future);
+    }
+
+    /**
+     * advances the clock until it holds no more than the maximum size. documents that have already left the cache are dropped,
+     * and documents read since they were last passed are given another round. must be called while holding the lock on the clock
+     */
+    private void evict() {
+        while (clock.size() > maximumSize) {
+            CachedDocument candidate = clock.pollFirst();
+            if (entries.get(candidate.key) != candidate) continue;
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                clock.addLast(candidate);
+                continue;
+            }
+            if (entries.remove(candidate.key, candidate)) {
+                forgetFile(candidate.key);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * drops the record of a file's current version once its entry leaves the cache, so reading many distinct files does not
+     * keep a record for each of them
+     */
+    private void forgetFile(Key key) {
+        if (key.source instanceof String) currentFileKeys.remove(new Key(key.source, 0, 0, key.type), key);
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException && !(e.getCause() instanceof CompletionException)) throw (RuntimeException)e.getCause();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer digest(byte[] content) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("sha-256 is not available", e);
+        }
+    }
+}
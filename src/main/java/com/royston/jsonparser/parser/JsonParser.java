@@ -1,29 +1,38 @@
 package com.royston.jsonparser.parser;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 
 import com.royston.jsonparser.exceptions.InvalidJsonException;
 import com.royston.jsonparser.exceptions.JsonDeserialisationException;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation.Probe;
+import com.royston.jsonparser.instrumentation.PhaseMetrics.Phase;
 import com.royston.jsonparser.parser.Token.TOKEN;
 import com.royston.jsonparser.serialiser.*;
 import com.royston.jsonparser.structures.*;
 
 public class JsonParser {
 
-    private static class Pair<K,V> {
-        K first;
-        V second;
-    
-        protected Pair(K first, V second){
-            this.first = first;
-            this.second = second;
-        }
-    }
+    /**
+     * the default maximum nesting depth of objects and arrays accepted by the parser
+     */
+    public static final int DEFAULT_MAX_DEPTH = 1000;
 
     /**
      * parses a json string into a new {@link JsonStructure}
@@ -32,10 +41,108 @@ public class JsonParser {
      * @throws InvalidJsonException the json string is not valid
      */
     public static JsonStructure parseJson(String jsonString) throws InvalidJsonException {
+        return parseJson(jsonString, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * parses a json string into a new {@link JsonStructure}, rejecting documents nested deeper than the given depth.
+     * parsing uses an explicit container stack rather than recursion, so the thread stack does not limit the depth
+     * @param jsonString the raw json string to parse
+     * @param maxDepth the maximum nesting depth of objects and arrays
+     * @return a {@link JsonStructure} containing the parsed data
+     * @throws InvalidJsonException the json string is not valid or is nested too deeply
+     */
+    public static JsonStructure parseJson(String jsonString, int maxDepth) throws InvalidJsonException {
+        Probe probe = JsonInstrumentation.start(Phase.TOKENISE);
         Tokeniser tokeniser = new Tokeniser(jsonString);
-        if (tokeniser.tokens.get(0).type == TOKEN.CURLY_OPEN) return parseObject(tokeniser.tokens, 0).second;
-        if (tokeniser.tokens.get(0).type == TOKEN.ARRAY_OPEN) return parseArray(tokeniser.tokens, 0).second;
-        throw new InvalidJsonException("json string does not start with an object or array");
+        if (probe != null) probe.end(jsonString.length(), -1, tokeniser.tokens.size(), -1);
+        probe = JsonInstrumentation.start(Phase.PARSE);
+        StructureBuilder builder = new StructureBuilder(maxDepth);
+        for (Token token : tokeniser.tokens) builder.accept(token.type, token.value);
+        if (!builder.isComplete()) {
+            if (tokeniser.tokens.isEmpty()) throw new InvalidJsonException("json string does not start with an object or array");
+            throw new InvalidJsonException("unexpected end of json input");
+        }
+        if (probe != null) probe.end(-1, -1, builder.valueCount(), builder.deepest());
+        return builder.getResult();
+    }
+
+    /**
+     * parses only the outer levels of a json string, keeping every object and array nested deeper as a {@link JsonRawValue}.
+     * the raw values are written back verbatim and only parsed if accessed, so forwarding a document after editing a few of its
+     * top level fields costs one scan to parse, and one scan to check and one copy of each nested payload. raw values are not parsed until accessed
+     * @param jsonString the raw json string to parse
+     * @param rawDepth the number of levels to parse, e.g. 1 to parse only the root and keep its nested objects and arrays raw
+     * @return a {@link JsonStructure} containing the parsed data
+     * @throws InvalidJsonException the json string is not valid
+     */
+    public static JsonStructure parseJsonShallow(String jsonString, int rawDepth) throws InvalidJsonException {
+        try {
+            return parseJsonShallow(new StringReader(jsonString), rawDepth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * parses only the outer levels of json from a {@link Reader}, see {@link #parseJsonShallow(String, int)}
+     * @param reader the source of the json document, which is not closed
+     * @param rawDepth the number of levels to parse, e.g. 1 to parse only the root and keep its nested objects and arrays raw
+     * @return a {@link JsonStructure} containing the parsed data
+     * @throws IOException the reader failed
+     * @throws InvalidJsonException the json is not valid
+     */
+    public static JsonStructure parseJsonShallow(Reader reader, int rawDepth) throws IOException, InvalidJsonException {
+        if (rawDepth < 1) throw new IllegalArgumentException("rawDepth must be at least 1");
+        Probe probe = JsonInstrumentation.start(Phase.PARSE);
+        TokenReader tokens = new TokenReader(reader);
+        StructureBuilder builder = new StructureBuilder(DEFAULT_MAX_DEPTH);
+        while (tokens.next()) {
+            boolean container = tokens.type == TOKEN.CURLY_OPEN || tokens.type == TOKEN.ARRAY_OPEN;
+            if (container && builder.depth() >= rawDepth) builder.acceptValue(new JsonRawValue(tokens.captureValue()));
+            else builder.accept(tokens.type, tokens.value);
+        }
+        if (!builder.isComplete()) throw new InvalidJsonException(builder.valueCount() == 0 ? "json string does not start with an object or array" : "unexpected end of json input");
+        if (probe != null) probe.end(tokens.charsRead(), -1, builder.valueCount(), builder.deepest());
+        return builder.getResult();
+    }
+
+    /**
+     * parses json from a {@link Reader} into direct memory outside of the java heap, so that a very large document adds almost nothing
+     * for the garbage collector to trace. the characters are streamed, so the text is never held in memory as a whole
+     * @param reader the source of the json document, which is not closed
+     * @return the off-heap document, which should be closed once no longer needed
+     * @throws IOException the reader failed
+     * @throws InvalidJsonException the json is not valid
+     */
+    public static OffHeapJsonDocument parseJsonOffHeap(Reader reader) throws IOException, InvalidJsonException {
+        return parseJsonOffHeap(reader, new OffHeapJsonDocument.Builder());
+    }
+
+    /**
+     * parses json from a {@link Reader} into a memory-mapped index file, which can be reopened without parsing on a later run
+     * with {@link OffHeapJsonDocument#open(File)}
+     * @param reader the source of the json document, which is not closed
+     * @param indexFile the index file to create or overwrite
+     * @return the off-heap document, which should be closed once no longer needed
+     * @throws IOException the reader failed or the index file could not be written
+     * @throws InvalidJsonException the json is not valid
+     */
+    public static OffHeapJsonDocument parseJsonOffHeap(Reader reader, File indexFile) throws IOException, InvalidJsonException {
+        return parseJsonOffHeap(reader, new OffHeapJsonDocument.Builder(indexFile));
+    }
+
+    private static OffHeapJsonDocument parseJsonOffHeap(Reader reader, OffHeapJsonDocument.Builder sink) throws IOException, InvalidJsonException {
+        try (sink) {
+            Probe probe = JsonInstrumentation.start(Phase.PARSE);
+            TokenReader tokens = new TokenReader(reader);
+            StructureBuilder builder = new StructureBuilder(DEFAULT_MAX_DEPTH, sink);
+            while (tokens.next()) builder.accept(tokens.type, tokens.value);
+            if (!builder.isComplete()) throw new InvalidJsonException(builder.valueCount() == 0 ? "json string does not start with an object or array" : "unexpected end of json input");
+            OffHeapJsonDocument document = sink.build();
+            if (probe != null) probe.end(tokens.charsRead(), -1, builder.valueCount(), builder.deepest());
+            return document;
+        }
     }
 
     /**
@@ -54,6 +161,48 @@ public class JsonParser {
         return Serialiser.deserialise(json, outputType);
     }
     
+    /**
+     * parses a json string and deserialises it into an existing instance, see {@link Serialiser#deserialiseInto(JsonStructure, Object)}
+     * @param <T> a user defined class that stores the json data
+     * @param jsonString the raw json string to parse and deserialise
+     * @param target the object or array to fill
+     * @return the target, or a new array if the json array's length differs from the target array's
+     * @throws InvalidJsonException json string is invalid
+     * @throws JsonDeserialisationException data cannot be deserialised into the target
+     */
+    public static <T> T deserialiseInto(String jsonString, T target) throws InvalidJsonException, JsonDeserialisationException {
+        return Serialiser.deserialiseInto(parseJson(jsonString), target);
+    }
+
+    /**
+     * parses a json string and deserialises it into an existing instance of a generic type such as a {@link java.util.List},
+     * see {@link Serialiser#deserialiseInto(JsonStructure, Object, TypeInfo)}. example usage:
+     * <pre> deserialiseInto(jsonString, quotes, new TypeInfo<List<Quote>>(){}); </pre>
+     * @param <T> a user defined class that stores the json data
+     * @param jsonString the raw json string to parse and deserialise
+     * @param target the object, list or array to fill
+     * @param outputType a holder class to pass in the type details of the target
+     * @return the target, or a new list or array if the target could not be reused
+     * @throws InvalidJsonException json string is invalid
+     * @throws JsonDeserialisationException data cannot be deserialised into the target
+     */
+    public static <T> T deserialiseInto(String jsonString, T target, TypeInfo<T> outputType) throws InvalidJsonException, JsonDeserialisationException {
+        return Serialiser.deserialiseInto(parseJson(jsonString), target, outputType);
+    }
+
+    /**
+     * parses utf-8 encoded json and deserialises it into an existing instance, see {@link Serialiser#deserialiseInto(JsonStructure, Object)}
+     * @param <T> a user defined class that stores the json data
+     * @param jsonBytes the utf-8 encoded json to parse and deserialise
+     * @param target the object or array to fill
+     * @return the target, or a new array if the json array's length differs from the target array's
+     * @throws InvalidJsonException json is invalid
+     * @throws JsonDeserialisationException data cannot be deserialised into the target
+     */
+    public static <T> T deserialiseInto(byte[] jsonBytes, T target) throws InvalidJsonException, JsonDeserialisationException {
+        return Serialiser.deserialiseInto(parseJson(new String(jsonBytes, StandardCharsets.UTF_8)), target);
+    }
+
     /**
      * reads in a json string from a file and parses and deserialises it into a user defined class structure
      * example usage: 
@@ -80,85 +229,114 @@ public class JsonParser {
     }
 
     /**
-     * parses tokenised json data into a new {@link JsonObject}
-     * @param tokens the list of json tokens
-     * @param position the current position in the list being parsed
-     * @return a {@link Pair} object containing the new position to continue parsing from and a new {@link JsonObject} instance
-     * @throws InvalidJsonException there are an invalid sequence of json tokens
-     */
-    private static Pair<Integer, JsonStructure> parseObject(List<Token> tokens, int position) throws InvalidJsonException {
-        JsonObject jsonObject = new JsonObject();
-        if (tokens.get(position).type != TOKEN.CURLY_OPEN) throw new InvalidJsonException("Invalid Json");
-        position++;
-        while (position < tokens.size()){
-            if (tokens.get(position).type == TOKEN.STRING){
-                String key = tokens.get(position).value; position++;
-                if (tokens.get(position).type != TOKEN.COLON) throw new InvalidJsonException("Invalid Json");
-                position++;
-                String jsonValue = tokens.get(position).value;
-                TOKEN type = tokens.get(position).type;
-                if (type == TOKEN.STRING) jsonObject.addValue(key, jsonValue);
-                else if (type == TOKEN.BOOLEAN) jsonObject.addValue(key, jsonValue == "true" ? true : false);
-                else if (type == TOKEN.NULL_TYPE) jsonObject.addValue(key, (null));
-                else if (type == TOKEN.NUMBER) jsonObject.addValue(key, parseNumber(jsonValue));
-                else if (type == TOKEN.CURLY_OPEN) {
-                    Pair<Integer, JsonStructure> parsed = parseObject(tokens, position);
-                    position = parsed.first;
-                    jsonObject.addValue(key, parsed.second);
-                }
-                else if (type == TOKEN.ARRAY_OPEN) {
-                    Pair<Integer, JsonStructure> parsed = parseArray(tokens, position);
-                    position = parsed.first;
-                    jsonObject.addValue(key, parsed.second);
-                }
-            }
-            else if (tokens.get(position).type == TOKEN.CURLY_CLOSE) break;
-            position++;
-            if (tokens.get(position).type == TOKEN.CURLY_CLOSE) break;
-            if (tokens.get(position).type != TOKEN.COMMA) throw new InvalidJsonException("Invalid Json");
-            position++;
-            if (tokens.get(position).type != TOKEN.STRING) throw new InvalidJsonException("Invalid Json");
+     * parses utf-8 encoded json from a stream into a new {@link JsonStructure}, reading it in chunks rather than into a single string
+     * @param input the stream to read, which is not closed
+     * @return a {@link JsonStructure} containing the parsed data
+     * @throws IOException the stream could not be read
+     * @throws InvalidJsonException the json is not valid
+     */
+    public static JsonStructure parseJson(InputStream input) throws IOException, InvalidJsonException {
+        Probe probe = JsonInstrumentation.start(Phase.PARSE);
+        IncrementalJsonParser parser = new IncrementalJsonParser();
+        byte[] buffer = new byte[8192];
+        ByteBuffer chunk = ByteBuffer.wrap(buffer);
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            chunk.clear().limit(read);
+            parser.feed(chunk);
         }
-        return new Pair<>(position, jsonObject);
+        JsonStructure json = parser.endOfInput();
+        if (probe != null) probe.end(-1, -1, parser.valueCount(), parser.deepest());
+        return json;
     }
-    
+
     /**
-     * parses tokenised json data into a new {@link JsonArray}
-     * @param tokens the list of json tokens
-     * @param position the current position in the list being parsed
-     * @return a {@link Pair} object containing the new position to continue parsing from and a new {@link JsonArray} instance
-     * @throws InvalidJsonException there are an invalid sequence of json tokens
-     */
-    private static Pair<Integer, JsonStructure> parseArray(List<Token> tokens, int position) throws InvalidJsonException {
-        JsonArray jsonArray = new JsonArray();
-        if (tokens.get(position).type != TOKEN.ARRAY_OPEN) throw new InvalidJsonException("Invalid Json");
-        position++;
-        while (position < tokens.size()){
-            String jsonValue = tokens.get(position).value;
-            TOKEN type = tokens.get(position).type;
-            if (type == TOKEN.ARRAY_CLOSE) break;
-            if (type == TOKEN.STRING) jsonArray.addValue(jsonValue);
-            else if (type == TOKEN.BOOLEAN) jsonArray.addValue(jsonValue == "true" ? true : false);
-            else if (type == TOKEN.NULL_TYPE) jsonArray.addValue(null);
-            else if (type == TOKEN.NUMBER) jsonArray.addValue(parseNumber(jsonValue));
-            else if (type == TOKEN.CURLY_OPEN) {
-                Pair<Integer, JsonStructure> parsed = parseObject(tokens, position);
-                position = parsed.first;
-                jsonArray.addValue(parsed.second);
-            }
-            else if (type == TOKEN.ARRAY_OPEN) {
-                Pair<Integer, JsonStructure> parsed = parseArray(tokens, position);
-                position = parsed.first;
-                jsonArray.addValue(parsed.second);
+     * parses gzip compressed json into a new {@link JsonStructure}. decompression runs on a separate thread that overlaps with
+     * parsing, and the uncompressed text is never held in memory as a whole
+     * @param compressed the gzip compressed stream to read, which is closed once parsed
+     * @return a {@link JsonStructure} containing the parsed data
+     * @throws IOException the stream could not be read or is not valid gzip
+     * @throws InvalidJsonException the json is not valid
+     */
+    public static JsonStructure parseGzipJson(InputStream compressed) throws IOException, InvalidJsonException {
+        try (InputStream input = new PipelinedGzipInputStream(compressed)) {
+            return parseJson(input);
+        }
+    }
+
+    /**
+     * reads a gzip compressed json file and parses and deserialises it into a user defined class structure
+     * example usage: 
+     * <pre> MyJsonObject obj = deserialiseJsonFromGzipFile(new File("pathToFile.json.gz"), new TypeInfo<>(){}); </pre>
+     * @param <T> a user defined class that stores the json data
+     * @param file the gzip compressed json file
+     * @param typeInfo a holder class to pass in the type details for the deserialiser to read 
+     * @return an instance of the user defined class structure containing the deserialised json data, otherwise null if file cannot be read
+     */
+    public static <T> T deserialiseJsonFromGzipFile(File file, TypeInfo<T> typeInfo) {
+        JsonStructure json;
+        try {
+            json = parseGzipJson(new FileInputStream(file));
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+        return Serialiser.deserialise(json, typeInfo);
+    }
+
+    /**
+     * parses each line of gzip compressed newline delimited json, passing each document to the consumer as soon as it is parsed.
+     * blank lines are skipped
+     * @param compressed the gzip compressed stream to read, which is closed once every line has been read
+     * @param consumer receives each parsed document in order
+     * @throws IOException the stream could not be read or is not valid gzip
+     * @throws InvalidJsonException a line is not valid json
+     */
+    public static void parseGzipNdjson(InputStream compressed, Consumer<JsonStructure> consumer) throws IOException, InvalidJsonException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new PipelinedGzipInputStream(compressed), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) consumer.accept(parseJson(line));
             }
-            else if (tokens.get(position).type != TOKEN.COMMA) throw new InvalidJsonException("Invalid Json");
-            position++;
-            if (tokens.get(position).type == TOKEN.ARRAY_CLOSE) break;
-            else if (tokens.get(position).type != TOKEN.COMMA) throw new InvalidJsonException("Invalid Json");
-            position++;
-            if (tokens.get(position).type == TOKEN.COMMA) throw new InvalidJsonException("Invalid Json");
         }
-        return new Pair<>(position, (jsonArray));
+    }
+
+    /**
+     * writes a {@link JsonStructure} as gzip compressed utf-8 json. compression runs on a separate thread that overlaps with writing
+     * @param json the structure to write
+     * @param compressed the stream to write the gzip output to, which is closed once written
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
+     * @throws IOException the output could not be written
+     */
+    public static void writeGzipJson(JsonStructure json, OutputStream compressed, int indentAmount) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new PipelinedGzipOutputStream(compressed), StandardCharsets.UTF_8)) {
+            json.write(writer, indentAmount);
+        }
+    }
+
+    /**
+     * writes a {@link JsonStructure} to a gzip compressed json file
+     * @param json the structure to write
+     * @param file the file to create or overwrite
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
+     * @throws IOException the file could not be written
+     */
+    public static void writeGzipJsonFile(JsonStructure json, File file, int indentAmount) throws IOException {
+        writeGzipJson(json, new FileOutputStream(file), indentAmount);
+    }
+
+    /**
+     * creates a {@link Flow.Publisher} that lazily parses and deserialises the elements of a json array as subscribers request them
+     * example usage: 
+     * <pre> Flow.Publisher<MyJsonObject> items = publishArrayElements(reader, new TypeInfo<>(){}, "data", "items"); </pre>
+     * @param <T> a user defined class that stores each array element
+     * @param reader the source of the json document
+     * @param elementType a holder class to pass in the element type details for the deserialiser to read
+     * @param path the object keys leading from the root to the array, empty if the root is the array
+     * @return a single subscriber publisher of the deserialised array elements
+     */
+    public static <T> Flow.Publisher<T> publishArrayElements(Reader reader, TypeInfo<T> elementType, String... path) {
+        return new JsonArrayPublisher<>(reader, elementType, path);
     }
 
     /**
@@ -166,7 +344,7 @@ public class JsonParser {
      * @param numberAsString the string to parse as a number
      * @return the formatted number result as an object
      */
-    private static Object parseNumber(String numberAsString) {
+    static Object parseNumber(String numberAsString) {
         Object outputNumber = null;
         try {
             outputNumber = Integer.valueOf(numberAsString);
@@ -0,0 +1,141 @@
+package com.royston.jsonparser.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * decompresses a gzip stream on a background thread so inflating overlaps with whatever consumes the output. the two threads
+ * exchange a small fixed ring of reusable buffers, so at most {@code buffers * bufferSize} decompressed bytes are held at once.
+ * concatenated gzip members, as produced by appending to {@code .ndjson.gz} files, are read as a single stream
+ */
+public class PipelinedGzipInputStream extends InputStream {
+
+    /**
+     * a reusable buffer passed between the inflating thread and the reader. a negative length marks the end of the stream
+     */
+    private static final class Chunk {
+        private final byte[] buffer;
+        private int length;
+
+        private Chunk(int size){
+            buffer = new byte[size];
+        }
+    }
+
+    private final InputStream source;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread inflater;
+    private volatile Throwable error;
+    private volatile boolean closed = false;
+    private Chunk current;
+    private int position;
+
+    /**
+     * creates a stream using four 64KB buffers
+     * @param source the gzip compressed input, closed when this stream is closed
+     */
+    public PipelinedGzipInputStream(InputStream source){
+        this(source, 4, 65536);
+    }
+
+    /**
+     * @param source the gzip compressed input, closed when this stream is closed
+     * @param buffers the number of buffers in the ring, at least 2
+     * @param bufferSize the size of each buffer in bytes
+     */
+    public PipelinedGzipInputStream(InputStream source, int buffers, int bufferSize){
+        if (buffers < 2) throw new IllegalArgumentException("at least 2 buffers are required");
+        this.source = source;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.filled = new ArrayBlockingQueue<>(buffers);
+        for (int i=0; i<buffers; i++) free.add(new Chunk(bufferSize));
+        this.inflater = new Thread(this::inflate, "json-gzip-inflater");
+        inflater.setDaemon(true);
+        inflater.start();
+    }
+
+    /**
+     * fills buffers until the input ends. the end marker is always posted, even when inflating fails with an unchecked exception
+     * or an error, so the reader never waits forever and the failure is reported on its next call
+     */
+    private void inflate() {
+        try (GZIPInputStream gzip = new GZIPInputStream(source, 8192)) {
+            while (!closed) {
+                Chunk chunk = free.take();
+                int length = 0;
+                while (length < chunk.buffer.length) {
+                    int read = gzip.read(chunk.buffer, length, chunk.buffer.length - length);
+                    if (read < 0) break;
+                    length += read;
+                }
+                chunk.length = length;
+                if (length > 0) filled.put(chunk);
+                if (length < chunk.buffer.length) break;
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            Chunk end = new Chunk(0);
+            end.length = -1;
+            try {
+                filled.put(end);
+            } catch (InterruptedException e) {}
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) return -1;
+        return current.buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            if (closed) throw new IOException("stream is closed");
+            return 0;
+        }
+        if (!nextChunk()) return -1;
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.buffer, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * waits for the next filled buffer once the current one has been read
+     * @return false if the end of the stream has been reached
+     * @throws IOException the stream is closed, or decompressing failed
+     */
+    private boolean nextChunk() throws IOException {
+        if (closed) throw new IOException("stream is closed");
+        if (current == null || position == current.length) {
+            if (current != null && current.length >= 0) free.add(current);
+            try {
+                current = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for decompressed data");
+            }
+            position = 0;
+        }
+        if (current.length >= 0) return true;
+        if (error instanceof Error) throw (Error)error;
+        if (error != null) throw new IOException("failed to decompress gzip input", error);
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        inflater.interrupt();
+        source.close();
+    }
+}
@@ -0,0 +1,177 @@
+package com.royston.jsonparser.parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * compresses written bytes into gzip on a background thread so deflating overlaps with producing the output. the two threads
+ * exchange a small fixed ring of reusable buffers, so at most {@code buffers * bufferSize} uncompressed bytes are held at once
+ */
+public class PipelinedGzipOutputStream extends OutputStream {
+
+    /**
+     * a reusable buffer passed between the writer and the deflating thread. a negative length marks the end of the stream
+     */
+    private static final class Chunk {
+        private final byte[] buffer;
+        private int length;
+
+        private Chunk(int size){
+            buffer = new byte[size];
+        }
+    }
+
+    private final OutputStream target;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread deflater;
+    private volatile Throwable error;
+    private boolean closed = false;
+    private Chunk current;
+
+    /**
+     * creates a stream using four 64KB buffers
+     * @param target the output for the compressed bytes, closed when this stream is closed
+     */
+    public PipelinedGzipOutputStream(OutputStream target){
+        this(target, 4, 65536);
+    }
+
+    /**
+     * @param target the output for the compressed bytes, closed when this stream is closed
+     * @param buffers the number of buffers in the ring, at least 2
+     * @param bufferSize the size of each buffer in bytes
+     */
+    public PipelinedGzipOutputStream(OutputStream target, int buffers, int bufferSize){
+        if (buffers < 2) throw new IllegalArgumentException("at least 2 buffers are required");
+        this.target = target;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.filled = new ArrayBlockingQueue<>(buffers + 1);
+        for (int i=0; i<buffers; i++) free.add(new Chunk(bufferSize));
+        this.deflater = new Thread(this::deflate, "json-gzip-deflater");
+        deflater.setDaemon(true);
+        deflater.start();
+    }
+
+    /**
+     * compresses chunks until the end marker arrives. after any failure, including unchecked exceptions and errors, chunks are
+     * still consumed, so the writer never blocks waiting for a free buffer, and the failure is reported on its next call
+     */
+    private void deflate() {
+        GZIPOutputStream gzip = null;
+        try {
+            gzip = new GZIPOutputStream(target, 8192);
+        } catch (Throwable t) {
+            error = t;
+        }
+        try {
+            while (true) {
+                Chunk chunk = filled.take();
+                if (chunk.length < 0) break;
+                if (error == null) {
+                    try {
+                        gzip.write(chunk.buffer, 0, chunk.length);
+                    } catch (Throwable t) {
+                        error = t;
+                    }
+                }
+                free.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            if (error == null) gzip.close();
+            else target.close();
+        } catch (Throwable t) {
+            if (error == null) error = t;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        if (current == null) current = take(free);
+        current.buffer[current.length++] = (byte)b;
+        if (current.length == current.buffer.length) handOff();
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        checkOpen();
+        while (length > 0) {
+            if (current == null) current = take(free);
+            int count = Math.min(length, current.buffer.length - current.length);
+            System.arraycopy(bytes, offset, current.buffer, current.length, count);
+            current.length += count;
+            offset += count;
+            length -= count;
+            if (current.length == current.buffer.length) handOff();
+        }
+    }
+
+    /**
+     * passes any buffered bytes to the deflating thread. compressed output is only guaranteed to reach the target once the stream is closed
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        if (current != null && current.length > 0) handOff();
+    }
+
+    /**
+     * compresses any remaining bytes, writes the gzip trailer and closes the target
+     * @throws IOException compressing or writing to the target failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        if (current != null && current.length > 0) handOff();
+        closed = true;
+        Chunk end = new Chunk(0);
+        end.length = -1;
+        try {
+            filled.put(end);
+            deflater.join();
+        } catch (InterruptedException e) {
+            deflater.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for compression to finish");
+        }
+        checkError();
+    }
+
+    private void handOff() throws IOException {
+        try {
+            filled.put(current);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the compressor");
+        }
+        current = null;
+    }
+
+    private Chunk take(BlockingQueue<Chunk> queue) throws IOException {
+        try {
+            Chunk chunk = queue.take();
+            chunk.length = 0;
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for a free buffer");
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) throw new IOException("stream is closed");
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        if (error instanceof Error) throw (Error)error;
+        if (error != null) throw new IOException("failed to compress gzip output", error);
+    }
+}
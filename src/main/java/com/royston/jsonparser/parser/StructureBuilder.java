@@ -0,0 +1,216 @@
+package com.royston.jsonparser.parser;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+import com.royston.jsonparser.parser.Token.TOKEN;
+import com.royston.jsonparser.structures.*;
+
+/**
+ * builds a {@link JsonStructure} one token at a time using an explicit stack of open containers,
+ * so it can be driven by a token list or by an incremental tokeniser without recursion.
+ * when given an {@link OffHeapJsonDocument.Builder} the values are passed to it instead of being stored on the heap
+ */
+class StructureBuilder {
+
+    private enum State {
+        ROOT,
+        KEY_OR_CLOSE,
+        KEY,
+        COLON,
+        VALUE,
+        VALUE_OR_CLOSE,
+        COMMA_OR_CLOSE,
+        DONE
+    }
+
+    private final int maxDepth;
+    private final OffHeapJsonDocument.Builder sink;
+    private JsonStructure[] stack = new JsonStructure[16];
+    private boolean[] objects = new boolean[16];
+    private int depth = 0;
+    private int deepest = 0;
+    private long valueCount = 0;
+    private String pendingKey;
+    private State state = State.ROOT;
+    private JsonStructure root;
+
+    StructureBuilder(){
+        this(JsonParser.DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param maxDepth the maximum nesting depth of objects and arrays before parsing fails
+     */
+    StructureBuilder(int maxDepth){
+        this(maxDepth, null);
+    }
+
+    /**
+     * @param maxDepth the maximum nesting depth of objects and arrays before parsing fails
+     * @param sink the off-heap builder to pass values to, or null to build heap structures
+     */
+    StructureBuilder(int maxDepth, OffHeapJsonDocument.Builder sink){
+        if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be at least 1");
+        this.maxDepth = maxDepth;
+        this.sink = sink;
+    }
+
+    /**
+     * consumes the next token and attaches any completed value to the currently open container
+     * @param type the type of the token
+     * @param value the raw token value
+     * @throws InvalidJsonException the token is not valid at the current position
+     */
+    void accept(TOKEN type, String value) throws InvalidJsonException {
+        switch (state) {
+            case ROOT:
+                if (type != TOKEN.CURLY_OPEN && type != TOKEN.ARRAY_OPEN) throw new InvalidJsonException("json string does not start with an object or array");
+                open(type == TOKEN.CURLY_OPEN);
+                break;
+            case KEY_OR_CLOSE:
+                if (type == TOKEN.CURLY_CLOSE) pop();
+                else acceptKey(type, value);
+                break;
+            case KEY:
+                acceptKey(type, value);
+                break;
+            case COLON:
+                if (type != TOKEN.COLON) throw new InvalidJsonException("Invalid Json");
+                state = State.VALUE;
+                break;
+            case VALUE_OR_CLOSE:
+                if (type == TOKEN.ARRAY_CLOSE) pop();
+                else acceptValue(type, value);
+                break;
+            case VALUE:
+                acceptValue(type, value);
+                break;
+            case COMMA_OR_CLOSE:
+                boolean object = objects[depth - 1];
+                if (type == TOKEN.COMMA) state = object ? State.KEY : State.VALUE;
+                else if (type == TOKEN.CURLY_CLOSE && object) pop();
+                else if (type == TOKEN.ARRAY_CLOSE && !object) pop();
+                else throw new InvalidJsonException("Invalid Json");
+                break;
+            case DONE:
+                throw new InvalidJsonException("unexpected data after the end of the json");
+        }
+    }
+
+    /**
+     * attaches a value that was read without tokens, such as a {@link JsonRawValue}, to the currently open container
+     * @param value the value to attach
+     * @throws InvalidJsonException a value is not valid at the current position
+     */
+    void acceptValue(Object value) throws InvalidJsonException {
+        if (state != State.VALUE && state != State.VALUE_OR_CLOSE) throw new InvalidJsonException("Invalid Json");
+        attach(value);
+        state = State.COMMA_OR_CLOSE;
+    }
+
+    /**
+     * @return true once the root object or array has been closed
+     */
+    boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    /**
+     * @return the number of currently open containers
+     */
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * @return the deepest nesting of containers seen so far
+     */
+    int deepest() {
+        return deepest;
+    }
+
+    /**
+     * @return the number of values, including objects and arrays, attached so far
+     */
+    long valueCount() {
+        return valueCount;
+    }
+
+    /**
+     * @return the parsed root structure, or null if the root has not been closed yet
+     */
+    JsonStructure getResult() {
+        return isComplete() ? root : null;
+    }
+
+    private void acceptKey(TOKEN type, String value) throws InvalidJsonException {
+        if (type != TOKEN.STRING) throw new InvalidJsonException("Invalid Json");
+        pendingKey = value;
+        state = State.COLON;
+    }
+
+    private void acceptValue(TOKEN type, String value) throws InvalidJsonException {
+        switch (type) {
+            case STRING: attach(value); break;
+            case BOOLEAN: attach("true".equals(value)); break;
+            case NULL_TYPE: attach(null); break;
+            case NUMBER: attach(JsonParser.parseNumber(value)); break;
+            case CURLY_OPEN: open(true); return;
+            case ARRAY_OPEN: open(false); return;
+            default: throw new InvalidJsonException("Invalid Json");
+        }
+        state = State.COMMA_OR_CLOSE;
+    }
+
+    private void attach(Object value) {
+        valueCount++;
+        if (sink != null) {
+            if (objects[depth - 1]) sink.key(pendingKey);
+            sink.value(value);
+        }
+        else {
+            JsonStructure top = stack[depth - 1];
+            if (top instanceof JsonObject) ((JsonObject)top).addValue(pendingKey, value);
+            else ((JsonArray)top).addValue(value);
+        }
+        pendingKey = null;
+    }
+
+    private void open(boolean object) throws InvalidJsonException {
+        if (depth == maxDepth) throw new InvalidJsonException("json is nested deeper than the maximum depth of " + maxDepth);
+        JsonStructure structure = null;
+        if (sink != null) {
+            valueCount++;
+            if (depth > 0 && objects[depth - 1]) sink.key(pendingKey);
+            pendingKey = null;
+            if (object) sink.startObject();
+            else sink.startArray();
+        }
+        else {
+            structure = object ? new JsonObject() : new JsonArray();
+            if (depth == 0) { root = structure; valueCount++; }
+            else attach(structure);
+        }
+        push(structure, object);
+    }
+
+    private void push(JsonStructure structure, boolean object) {
+        if (depth == stack.length) {
+            JsonStructure[] grown = new JsonStructure[stack.length * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+            boolean[] grownObjects = new boolean[objects.length * 2];
+            System.arraycopy(objects, 0, grownObjects, 0, depth);
+            objects = grownObjects;
+        }
+        stack[depth] = structure;
+        objects[depth++] = object;
+        deepest = Math.max(deepest, depth);
+        state = object ? State.KEY_OR_CLOSE : State.VALUE_OR_CLOSE;
+    }
+
+    private void pop() {
+        stack[--depth] = null;
+        if (sink != null) sink.end();
+        state = depth == 0 ? State.DONE : State.COMMA_OR_CLOSE;
+    }
+}
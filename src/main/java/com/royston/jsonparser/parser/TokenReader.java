@@ -0,0 +1,150 @@
+package com.royston.jsonparser.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+import com.royston.jsonparser.parser.Token.TOKEN;
+
+/**
+ * a pull based tokeniser that reads json tokens from a {@link Reader} one at a time,
+ * only buffering a fixed size window of characters rather than the whole document
+ */
+class TokenReader implements Closeable {
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder text = new StringBuilder();
+    private StringBuilder recording;
+    private int position = 0;
+    private int limit = 0;
+    private long charsRead = 0;
+
+    TOKEN type;
+    String value;
+
+    TokenReader(Reader reader){
+        this.reader = reader;
+    }
+
+    /**
+     * reads the next token into {@link #type} and {@link #value}
+     * @return false if the end of the input has been reached
+     * @throws IOException the underlying reader failed
+     * @throws InvalidJsonException invalid characters appear in the input
+     */
+    boolean next() throws IOException, InvalidJsonException {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') c = read();
+        if (c == -1) return false;
+        switch (c){
+            case '{': return token(TOKEN.CURLY_OPEN, "{");
+            case '}': return token(TOKEN.CURLY_CLOSE, "}");
+            case '[': return token(TOKEN.ARRAY_OPEN, "[");
+            case ']': return token(TOKEN.ARRAY_CLOSE, "]");
+            case ':': return token(TOKEN.COLON, ":");
+            case ',': return token(TOKEN.COMMA, ",");
+            case 'n': return literal("null", TOKEN.NULL_TYPE);
+            case 't': return literal("true", TOKEN.BOOLEAN);
+            case 'f': return literal("false", TOKEN.BOOLEAN);
+            case '"':
+                text.setLength(0);
+                c = read();
+                while (c != '"') {
+                    if (c == -1) throw new InvalidJsonException("unexpected end of json input");
+                    text.append((char)c);
+                    if (c == '\\') {
+                        c = read();
+                        if (c == -1) throw new InvalidJsonException("unexpected end of json input");
+                        text.append((char)c);
+                    }
+                    c = read();
+                }
+                return token(TOKEN.STRING, text.toString());
+            default:
+                if (!isNumberChar(c)) throw new InvalidJsonException("Invalid Json");
+                text.setLength(0);
+                text.append((char)c);
+                while (isNumberChar(peek())) text.append((char)read());
+                return token(TOKEN.NUMBER, text.toString());
+        }
+    }
+
+    /**
+     * skips over the value starting with the current token, including any nested content
+     * @throws IOException the underlying reader failed
+     * @throws InvalidJsonException the input ends before the value is closed
+     */
+    void skipValue() throws IOException, InvalidJsonException {
+        int depth = 0;
+        do {
+            if (type == TOKEN.CURLY_OPEN || type == TOKEN.ARRAY_OPEN) depth++;
+            else if (type == TOKEN.CURLY_CLOSE || type == TOKEN.ARRAY_CLOSE) depth--;
+            if (depth == 0) return;
+        } while (next());
+        throw new InvalidJsonException("unexpected end of json input");
+    }
+
+    /**
+     * skips over the value starting with the current token like {@link #skipValue()}, returning its original text
+     * @return the raw json text of the value, including any whitespace inside it
+     * @throws IOException the underlying reader failed
+     * @throws InvalidJsonException the input ends before the value is closed
+     */
+    String captureValue() throws IOException, InvalidJsonException {
+        recording = new StringBuilder(value);
+        try {
+            skipValue();
+            return recording.toString();
+        } finally {
+            recording = null;
+        }
+    }
+
+    /**
+     * @return the number of characters read from the reader so far
+     */
+    long charsRead() {
+        return charsRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean token(TOKEN type, String value){
+        this.type = type;
+        this.value = value;
+        return true;
+    }
+
+    private boolean literal(String literal, TOKEN type) throws IOException, InvalidJsonException {
+        for (int i=1; i<literal.length(); i++) if (read() != literal.charAt(i)) throw new InvalidJsonException("Invalid Json");
+        return token(type, literal);
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            position++;
+            if (recording != null) recording.append((char)c);
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) { limit = 0; return -1; }
+            charsRead += limit;
+        }
+        return buffer[position];
+    }
+
+    private static boolean isNumberChar(int c) {
+        return c == '-' || (c >= '0' && c <= '9') || c == '.';
+    }
+}
@@ -0,0 +1,71 @@
+package com.royston.jsonparser.patch;
+
+import com.royston.jsonparser.structures.*;
+
+/**
+ * applies and creates RFC 7396 JSON Merge Patch documents. patches are applied in place, only visiting the keys present in the patch.
+ * example usage:
+ * <pre> JsonStructure updated = JsonMergePatch.apply(document, JsonParser.parseJson(patchString)); </pre>
+ */
+public class JsonMergePatch {
+
+    private JsonMergePatch(){}
+
+    /**
+     * merges a patch into the target document in place. null values in the patch remove keys and non-object values replace the target value.
+     * values are copied from the patch, so the patch shares nothing with the document and can be applied again
+     * @param target the document to modify
+     * @param patch the merge patch
+     * @return the patched document, which is the target itself unless the patch replaced the root
+     * @throws UnsupportedOperationException the target is frozen
+     */
+    public static JsonStructure apply(JsonStructure target, JsonStructure patch) {
+        return (JsonStructure)merge(target, patch);
+    }
+
+    /**
+     * creates a merge patch that turns the source document into the target document. merge patches cannot set a value to null,
+     * so keys whose value changes to null are removed when the patch is applied
+     * @param source the original document
+     * @param target the updated document
+     * @return the merge patch
+     */
+    public static JsonStructure diff(JsonStructure source, JsonStructure target) {
+        if (source instanceof JsonObject && target instanceof JsonObject) return diffObjects((JsonObject)source, (JsonObject)target);
+        return (JsonStructure)JsonValues.deepCopy(target);
+    }
+
+    private static Object merge(Object target, Object patch) {
+        if (!(patch instanceof JsonObject)) return JsonValues.deepCopy(patch);
+        JsonObject patchObject = (JsonObject)patch;
+        JsonObject targetObject = target instanceof JsonObject ? (JsonObject)target : new JsonObject();
+        for (String key : patchObject.keys()) {
+            Object value = patchObject.getValue(key).getValue();
+            if (value == null) {
+                if (targetObject.containsKey(key)) targetObject.removeValue(key);
+                continue;
+            }
+            GenericJsonValue<Object> existing = targetObject.getValue(key);
+            Object current = existing != null ? existing.getValue() : null;
+            Object merged = merge(current, value);
+            if (existing == null || merged != current) targetObject.addValue(key, merged);
+        }
+        return targetObject;
+    }
+
+    private static JsonObject diffObjects(JsonObject source, JsonObject target) {
+        JsonObject patch = new JsonObject();
+        for (String key : source.keys()) {
+            if (!target.containsKey(key)) patch.addValue(key, null);
+        }
+        for (String key : target.keys()) {
+            Object targetValue = target.getValue(key).getValue();
+            if (!source.containsKey(key)) { patch.addValue(key, JsonValues.deepCopy(targetValue)); continue; }
+            Object sourceValue = source.getValue(key).getValue();
+            if (JsonValues.jsonEquals(sourceValue, targetValue)) continue;
+            if (sourceValue instanceof JsonObject && targetValue instanceof JsonObject) patch.addValue(key, diffObjects((JsonObject)sourceValue, (JsonObject)targetValue));
+            else patch.addValue(key, JsonValues.deepCopy(targetValue));
+        }
+        return patch;
+    }
+}
@@ -0,0 +1,211 @@
+package com.royston.jsonparser.patch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.royston.jsonparser.exceptions.JsonPatchException;
+import com.royston.jsonparser.structures.*;
+
+/**
+ * applies and creates RFC 6902 JSON Patch documents. patches are applied in place, so the cost is proportional to the
+ * number of operations and the depth of their paths rather than the size of the document. example usage:
+ * <pre> JsonStructure updated = JsonPatch.apply(document, JsonParser.parseJson(patchString).getJsonArray()); </pre>
+ */
+public class JsonPatch {
+
+    private JsonPatch(){}
+
+    /**
+     * applies each operation of a patch to the target document in place. operations are applied in order, so if one fails
+     * the earlier operations remain applied. apply the patch to a copy of the document if all or nothing behaviour is needed.
+     * added and replaced values are copied, so the patch shares nothing with the document and can be applied again
+     * @param target the document to modify
+     * @param patch an array of patch operation objects
+     * @return the patched document, which is the target itself unless an operation replaced the root
+     * @throws JsonPatchException the patch is malformed, a path does not exist or a test operation failed
+     * @throws UnsupportedOperationException the target is frozen
+     */
+    public static JsonStructure apply(JsonStructure target, JsonArray patch) throws JsonPatchException {
+        JsonStructure document = target;
+        for (GenericJsonValue<Object> item : patch) {
+            if (!(item.getValue() instanceof JsonObject)) throw new JsonPatchException("patch operations must be json objects");
+            JsonObject operation = (JsonObject)item.getValue();
+            String op = member(operation, "op");
+            List<String> path = parsePointer(member(operation, "path"));
+            switch (op) {
+                case "add":
+                    document = add(document, path, JsonValues.deepCopy(value(operation)));
+                    break;
+                case "remove":
+                    remove(document, path);
+                    break;
+                case "replace": {
+                    Object value = JsonValues.deepCopy(value(operation));
+                    if (path.isEmpty()) document = toRoot(value);
+                    else {
+                        Object parent = resolve(document, path, path.size() - 1);
+                        String last = path.get(path.size() - 1);
+                        if (parent instanceof JsonObject) {
+                            if (!((JsonObject)parent).containsKey(last)) throw new JsonPatchException("path does not exist: " + member(operation, "path"));
+                            ((JsonObject)parent).addValue(last, value);
+                        }
+                        else ((JsonArray)parent).setValue(index((JsonArray)parent, last, false), value);
+                    }
+                    break;
+                }
+                case "move": {
+                    String from = member(operation, "from");
+                    String to = member(operation, "path");
+                    if (to.startsWith(from + "/")) throw new JsonPatchException("cannot move a value into one of its own children");
+                    if (from.equals(to)) { resolve(document, path, path.size()); break; }
+                    document = add(document, path, remove(document, parsePointer(from)));
+                    break;
+                }
+                case "copy": {
+                    List<String> from = parsePointer(member(operation, "from"));
+                    document = add(document, path, JsonValues.deepCopy(resolve(document, from, from.size())));
+                    break;
+                }
+                case "test":
+                    if (!JsonValues.jsonEquals(resolve(document, path, path.size()), value(operation))) {
+                        throw new JsonPatchException("test failed for path: " + member(operation, "path"));
+                    }
+                    break;
+                default:
+                    throw new JsonPatchException("unknown patch operation: " + op);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * creates a patch that turns the source document into the target document. objects are compared key by key and arrays
+     * index by index, so the diff runs in a single pass over both documents. values added by the patch are copies
+     * @param source the original document
+     * @param target the updated document
+     * @return an array of patch operation objects
+     */
+    public static JsonArray diff(JsonStructure source, JsonStructure target) {
+        JsonArray patch = new JsonArray();
+        diff(patch, "", source, target);
+        return patch;
+    }
+
+    private static void diff(JsonArray patch, String path, Object source, Object target) {
+        if (source instanceof JsonObject && target instanceof JsonObject) {
+            JsonObject sourceObject = (JsonObject)source, targetObject = (JsonObject)target;
+            for (String key : sourceObject.keys()) {
+                if (!targetObject.containsKey(key)) patch.addValue(operation("remove", path + "/" + escape(key), null, false));
+            }
+            for (String key : targetObject.keys()) {
+                String childPath = path + "/" + escape(key);
+                Object targetValue = targetObject.getValue(key).getValue();
+                if (!sourceObject.containsKey(key)) patch.addValue(operation("add", childPath, targetValue, true));
+                else diff(patch, childPath, sourceObject.getValue(key).getValue(), targetValue);
+            }
+        }
+        else if (source instanceof JsonArray && target instanceof JsonArray) {
+            JsonArray sourceArray = (JsonArray)source, targetArray = (JsonArray)target;
+            int common = Math.min(sourceArray.length(), targetArray.length());
+            for (int i=0; i<common; i++) diff(patch, path + "/" + i, sourceArray.getValue(i).getValue(), targetArray.getValue(i).getValue());
+            for (int i=common; i<targetArray.length(); i++) patch.addValue(operation("add", path + "/" + i, targetArray.getValue(i).getValue(), true));
+            for (int i=sourceArray.length() - 1; i>=common; i--) patch.addValue(operation("remove", path + "/" + i, null, false));
+        }
+        else if (!JsonValues.jsonEquals(source, target)) patch.addValue(operation("replace", path, target, true));
+    }
+
+    private static JsonObject operation(String op, String path, Object value, boolean hasValue) {
+        JsonObject operation = new JsonObject();
+        operation.addValue("op", op);
+        operation.addValue("path", path);
+        if (hasValue) operation.addValue("value", JsonValues.deepCopy(value));
+        return operation;
+    }
+
+    private static JsonStructure add(JsonStructure document, List<String> path, Object value) {
+        if (path.isEmpty()) return toRoot(value);
+        Object parent = resolve(document, path, path.size() - 1);
+        String last = path.get(path.size() - 1);
+        if (parent instanceof JsonObject) ((JsonObject)parent).addValue(last, value);
+        else if (last.equals("-")) ((JsonArray)parent).addValue(value);
+        else ((JsonArray)parent).addValue(index((JsonArray)parent, last, true), value);
+        return document;
+    }
+
+    private static Object remove(JsonStructure document, List<String> path) {
+        if (path.isEmpty()) throw new JsonPatchException("cannot remove the root of the document");
+        Object parent = resolve(document, path, path.size() - 1);
+        String last = path.get(path.size() - 1);
+        if (parent instanceof JsonObject) {
+            GenericJsonValue<Object> removed = ((JsonObject)parent).removeValue(last);
+            if (removed == null) throw new JsonPatchException("path does not exist: /" + String.join("/", path));
+            return removed.getValue();
+        }
+        return ((JsonArray)parent).removeValue(index((JsonArray)parent, last, false)).getValue();
+    }
+
+    /**
+     * walks the first {@code count} reference tokens of a pointer from the root of the document
+     * @return the value at the location, which must be a structure if further tokens are to be resolved against it
+     */
+    private static Object resolve(JsonStructure document, List<String> path, int count) {
+        Object current = document;
+        for (int i=0; i<count; i++) {
+            String token = path.get(i);
+            GenericJsonValue<Object> next = null;
+            if (current instanceof JsonObject) next = ((JsonObject)current).getValue(token);
+            else if (current instanceof JsonArray) next = ((JsonArray)current).getValue(index((JsonArray)current, token, false));
+            if (next == null) throw new JsonPatchException("path does not exist: /" + String.join("/", path.subList(0, i + 1)));
+            current = next.getValue();
+        }
+        if (count < path.size() && !(current instanceof JsonStructure)) throw new JsonPatchException("path does not exist: /" + String.join("/", path));
+        return current;
+    }
+
+    private static int index(JsonArray array, String token, boolean allowEnd) {
+        if (token.isEmpty() || (token.length() > 1 && token.charAt(0) == '0')) throw new JsonPatchException("invalid array index: " + token);
+        for (int i=0; i<token.length(); i++) if (token.charAt(i) < '0' || token.charAt(i) > '9') throw new JsonPatchException("invalid array index: " + token);
+        int index;
+        try {
+            index = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new JsonPatchException("invalid array index: " + token);
+        }
+        if (index > array.length() || (index == array.length() && !allowEnd)) throw new JsonPatchException("array index out of bounds: " + token);
+        return index;
+    }
+
+    /**
+     * splits a json pointer into its unescaped reference tokens
+     * @param pointer the json pointer, e.g. {@code /a/0/b~1c}
+     * @return the reference tokens, empty for the whole document
+     */
+    static List<String> parsePointer(String pointer) {
+        List<String> tokens = new ArrayList<>();
+        if (pointer.isEmpty()) return tokens;
+        if (pointer.charAt(0) != '/') throw new JsonPatchException("json pointer must start with '/': " + pointer);
+        for (String token : pointer.substring(1).split("/", -1)) tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        return tokens;
+    }
+
+    private static String escape(String key) {
+        return key.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static String member(JsonObject operation, String name) {
+        GenericJsonValue<Object> value = operation.getValue(name);
+        if (value == null || !(value.getValue() instanceof String)) throw new JsonPatchException("patch operation is missing the \"" + name + "\" member");
+        return (String)value.getValue();
+    }
+
+    private static Object value(JsonObject operation) {
+        GenericJsonValue<Object> value = operation.getValue("value");
+        if (value == null) throw new JsonPatchException("patch operation is missing the \"value\" member");
+        return value.getValue();
+    }
+
+    private static JsonStructure toRoot(Object value) {
+        if (!(value instanceof JsonStructure)) throw new JsonPatchException("the root of the document must be an object or array");
+        return (JsonStructure)value;
+    }
+}
@@ -0,0 +1,42 @@
+package com.royston.jsonparser.patch;
+
+import com.royston.jsonparser.structures.*;
+
+/**
+ * value comparison and copying shared by the patch implementations
+ */
+final class JsonValues {
+
+    private JsonValues(){}
+
+    /**
+     * compares two json values structurally. numbers are equal if they are numerically equal regardless of their boxed type
+     * and object keys are compared regardless of their order
+     * @param first the first json value
+     * @param second the second json value
+     * @return true if the values are equal
+     */
+    static boolean jsonEquals(Object first, Object second) {
+        return JsonStructure.valuesEqual(first, second, JsonStructure.NumberComparison.NUMERIC);
+    }
+
+    /**
+     * creates a mutable deep copy of a json value. frozen structures and primitives are immutable so they are shared
+     * @param value the json value to copy
+     * @return the copy
+     */
+    static Object deepCopy(Object value) {
+        if (value instanceof JsonStructure && ((JsonStructure)value).isFrozen()) return value;
+        if (value instanceof JsonObject) {
+            JsonObject source = (JsonObject)value, copy = new JsonObject();
+            for (String key : source.keys()) copy.addValue(key, deepCopy(source.getValue(key).getValue()));
+            return copy;
+        }
+        if (value instanceof JsonArray) {
+            JsonArray copy = new JsonArray();
+            for (GenericJsonValue<Object> item : (JsonArray)value) copy.addValue(deepCopy(item.getValue()));
+            return copy;
+        }
+        return value;
+    }
+}
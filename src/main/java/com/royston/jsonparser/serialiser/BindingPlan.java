@@ -0,0 +1,238 @@
+package com.royston.jsonparser.serialiser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.royston.jsonparser.annotations.*;
+import com.royston.jsonparser.exceptions.JsonDeserialisationException;
+
+/**
+ * the reflective metadata needed to (de)serialise a class, computed once per class and shared between threads.
+ * records are bound without annotations through their components and canonical constructor
+ */
+class BindingPlan {
+
+    private static final ConcurrentHashMap<Class<?>, BindingPlan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * reflective access to record support, which is only present when running on java 16 or later
+     */
+    private static final class Records {
+        private static final Method isRecord;
+        private static final Method getRecordComponents;
+        private static final Method getName;
+
+        static {
+            Method record = null, components = null, name = null;
+            try {
+                record = Class.class.getMethod("isRecord");
+                components = Class.class.getMethod("getRecordComponents");
+                name = Class.forName("java.lang.reflect.RecordComponent").getMethod("getName");
+            } catch (ReflectiveOperationException e) {}
+            isRecord = record;
+            getRecordComponents = components;
+            getName = name;
+        }
+
+        static boolean isRecord(Class<?> klass) {
+            try {
+                return isRecord != null && (Boolean)isRecord.invoke(klass);
+            } catch (ReflectiveOperationException e) {
+                return false;
+            }
+        }
+
+        /**
+         * @return the fields backing the record components, in declaration order
+         */
+        static Field[] componentFields(Class<?> klass) {
+            try {
+                Object[] components = (Object[])getRecordComponents.invoke(klass);
+                Field[] fields = new Field[components.length];
+                for (int i=0; i<components.length; i++) fields[i] = klass.getDeclaredField((String)getName.invoke(components[i]));
+                return fields;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("cannot read the components of record " + klass.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * a field annotated with {@link JsonProperty}
+     */
+    static class Property {
+        final Field field;
+        final String name;
+        final boolean optional;
+        final Class<?> type;
+        final Type genericType;
+
+        private Property(Field field, JsonProperty annotation){
+            this(field, annotation.value(), annotation.optional());
+        }
+
+        private Property(Field field, String name, boolean optional){
+            this.field = field;
+            this.name = name;
+            this.optional = optional;
+            this.type = field.getType();
+            this.genericType = field.getGenericType();
+            field.trySetAccessible();
+        }
+    }
+
+    /**
+     * a parameter of a {@link JsonConstructor} constructor
+     */
+    static class Param {
+        final String name;
+        final boolean nullable;
+        final Class<?> type;
+        final Type genericType;
+
+        private Param(Parameter parameter, JsonParam annotation){
+            this(parameter, annotation != null ? annotation.value() : null, annotation == null || annotation.nullable());
+        }
+
+        private Param(Parameter parameter, String name, boolean nullable){
+            this.name = name;
+            this.nullable = nullable;
+            this.type = parameter.getType();
+            this.genericType = parameter.getParameterizedType();
+        }
+    }
+
+    final Class<?> klass;
+    final boolean record;
+    final List<Property> properties;
+    private final Map<String, Property> propertiesByName;
+    private volatile Constructor<?> constructor;
+    private volatile Param[] params;
+    private volatile MethodHandle creator;
+
+    private BindingPlan(Class<?> klass){
+        this.klass = klass;
+        this.record = Records.isRecord(klass);
+        List<Property> properties = new ArrayList<>();
+        Map<String, Property> propertiesByName = new HashMap<>();
+        for (Field field : record ? Records.componentFields(klass) : klass.getDeclaredFields()) {
+            JsonProperty annotation = field.getDeclaredAnnotation(JsonProperty.class);
+            if (annotation == null && !record) continue;
+            Property property = annotation != null ? new Property(field, annotation) : new Property(field, field.getName(), false);
+            properties.add(property);
+            propertiesByName.putIfAbsent(property.name, property);
+        }
+        this.properties = List.copyOf(properties);
+        this.propertiesByName = propertiesByName;
+    }
+
+    /**
+     * retrieves the shared plan for a class, building it on first use
+     * @param klass the class to bind
+     * @return the binding plan for the class
+     */
+    static BindingPlan of(Class<?> klass) {
+        return plans.computeIfAbsent(klass, BindingPlan::new);
+    }
+
+    /**
+     * @param name the json key
+     * @return the property bound to the json key, or null if there is none
+     */
+    Property property(String name) {
+        return propertiesByName.get(name);
+    }
+
+    /**
+     * @return the constructor to use for deserialisation
+     * @throws JsonDeserialisationException no valid constructor exists
+     */
+    Constructor<?> constructor() throws JsonDeserialisationException {
+        Constructor<?> usableConstructor = constructor;
+        if (usableConstructor == null) {
+            usableConstructor = findConstructor(klass);
+            JsonConstructor constructorAnnotation = usableConstructor.getAnnotation(JsonConstructor.class);
+            Parameter[] parameters = usableConstructor.getParameters();
+            Param[] params = new Param[parameters.length];
+            for (int i=0; i<params.length; i++) {
+                JsonParam paramAnnotation = parameters[i].getAnnotation(JsonParam.class);
+                if (constructorAnnotation == null && paramAnnotation == null) {
+                    params[i] = new Param(parameters[i], properties.get(i).name, !parameters[i].getType().isPrimitive());
+                    continue;
+                }
+                if (paramAnnotation == null && !constructorAnnotation.allowNonAnnotatedParams()) throw new JsonDeserialisationException("no annotation???");
+                params[i] = new Param(parameters[i], paramAnnotation);
+            }
+            this.params = params;
+            this.creator = spreadCreator(usableConstructor);
+            constructor = usableConstructor;
+        }
+        return usableConstructor;
+    }
+
+    /**
+     * @return a handle taking the constructor arguments as a single {@code Object[]} and returning the new instance,
+     * or null if the constructor can only be called reflectively
+     * @throws JsonDeserialisationException no valid constructor exists
+     */
+    MethodHandle creator() throws JsonDeserialisationException {
+        constructor();
+        return creator;
+    }
+
+    private static MethodHandle spreadCreator(Constructor<?> constructor) {
+        try {
+            constructor.trySetAccessible();
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+            return handle.asSpreader(Object[].class, constructor.getParameterCount()).asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the parameters of the deserialisation constructor
+     * @throws JsonDeserialisationException no valid constructor exists
+     */
+    Param[] params() throws JsonDeserialisationException {
+        constructor();
+        return params;
+    }
+
+    /**
+     * searches for a valid constructor to use for deserialisation. a record without a {@link JsonConstructor} uses its canonical constructor
+     * @param klass the class to search
+     * @return the constructor to use
+     * @throws JsonDeserialisationException no valid constructor exists
+     */
+    private Constructor<?> findConstructor(Class<?> klass) throws JsonDeserialisationException {
+        Constructor<?> usableConstructor = null;
+        Constructor<?>[] constructors = klass.getConstructors();
+        List<Constructor<?>> annotatedConstructors = Arrays.stream(constructors).filter(c -> c.isAnnotationPresent(JsonConstructor.class)).collect(Collectors.toList());
+        if (annotatedConstructors.size() > 1) throw new JsonDeserialisationException("Cannot have more than 1 Json Contructor");
+        else if (annotatedConstructors.size() == 1) usableConstructor = annotatedConstructors.get(0);
+        else if (record) {
+            try {
+                usableConstructor = klass.getDeclaredConstructor(properties.stream().map(p -> p.type).toArray(Class<?>[]::new));
+            } catch (NoSuchMethodException e) {
+                throw new JsonDeserialisationException("record has no canonical constructor");
+            }
+        }
+        else usableConstructor = Arrays.stream(constructors).filter(c -> c.getParameterCount() == 0).findFirst().orElse(null);
+        if (usableConstructor == null) throw new JsonDeserialisationException("No usable constructors for deserialisation");
+        return usableConstructor;
+    }
+}
@@ -1,5 +1,6 @@
 package com.royston.jsonparser.serialiser;
 
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -8,6 +9,9 @@ import java.util.stream.Collectors;
 
 import com.royston.jsonparser.annotations.*;
 import com.royston.jsonparser.exceptions.*;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation.Probe;
+import com.royston.jsonparser.instrumentation.PhaseMetrics.Phase;
 import com.royston.jsonparser.structures.*;
 
 
@@ -42,19 +46,13 @@ public class Serialiser {
         if (toSerialise == null) return null;
         JsonObject object = new JsonObject();
         try {
-            Field[] fields = toSerialise.getClass().getDeclaredFields();
-            for (Field field : fields) {
-                if (!field.isAnnotationPresent(JsonProperty.class)) continue;
-                JsonProperty jsonProperty = field.getDeclaredAnnotation(JsonProperty.class);
-                String jsonName = jsonProperty.value();
-                boolean accessible = field.canAccess(toSerialise);
-                if (!accessible) field.setAccessible(true);
-                Object value = field.get(toSerialise);
-                if (!accessible) field.setAccessible(false);
-                if (value == null) { if (!jsonProperty.optional()) object.addValue(jsonName, null); }
-                else if (List.class.isAssignableFrom(field.getType())) object.addValue(jsonName, serialiseArray((List<?>)value));
-                else if (field.getType().isArray()) object.addValue(jsonName, serialiseArray(arrayToList(value, field.getType().getComponentType())));
-                else if (!isJsonPrimitive(field.getType())) object.addValue(jsonName, serialiseObject(value));
+            for (BindingPlan.Property property : BindingPlan.of(toSerialise.getClass()).properties) {
+                String jsonName = property.name;
+                Object value = property.field.get(toSerialise);
+                if (value == null) { if (!property.optional) object.addValue(jsonName, null); }
+                else if (List.class.isAssignableFrom(property.type)) object.addValue(jsonName, serialiseArray((List<?>)value));
+                else if (property.type.isArray()) object.addValue(jsonName, serialiseArray(arrayToList(value, property.type.getComponentType())));
+                else if (!isJsonPrimitive(property.type)) object.addValue(jsonName, serialiseObject(value));
                 else object.addValue(jsonName, value);
             }
         } catch (IllegalAccessException e) {
@@ -71,9 +69,13 @@ public class Serialiser {
      */
     public static JsonStructure serialise(Object toSerialise) throws JsonSerialisationException {
         if (toSerialise == null) return null;
-        if (toSerialise.getClass().isArray()) return serialiseArray(arrayToList(toSerialise, toSerialise.getClass().getComponentType()));
-        if (toSerialise instanceof List) return serialiseArray((List<?>)toSerialise);
-        return serialiseObject(toSerialise);
+        Probe probe = JsonInstrumentation.start(Phase.SERIALISE);
+        JsonStructure json;
+        if (toSerialise.getClass().isArray()) json = serialiseArray(arrayToList(toSerialise, toSerialise.getClass().getComponentType()));
+        else if (toSerialise instanceof List) json = serialiseArray((List<?>)toSerialise);
+        else json = serialiseObject(toSerialise);
+        if (probe != null) probe.end(-1, -1, -1, -1);
+        return json;
     }
 
     /**
@@ -113,11 +115,13 @@ public class Serialiser {
         Type type = isParameterized ? ((ParameterizedType)listType).getActualTypeArguments()[0] : ((Class<?>)listType).getComponentType();
         for (GenericJsonValue<?> item : toDeserialise) {
             if (type instanceof ParameterizedType && List.class.isAssignableFrom((Class<?>)((ParameterizedType)type).getRawType())) {
-                list.add(deserialiseArray((JsonArray)item.getValue(), (ParameterizedType)type));
+                list.add(deserialiseArray((JsonArray)adaptRaw(item.getValue(), JsonArray.class), (ParameterizedType)type));
+                continue;
             }
-            else if (((Class<?>) type).isArray()) list.add(deserialiseArray((JsonArray)item.getValue(), type));
-            else if (!isJsonPrimitive((Class<?>) type)) list.add(deserialiseObject((JsonObject)item.getValue(), (Class<?>) type));
-            else list.add(item.getValue());
+            Object value = adaptRaw(item.getValue(), (Class<?>) type);
+            if (((Class<?>) type).isArray()) list.add(deserialiseArray((JsonArray)value, type));
+            else if (!isJsonPrimitive((Class<?>) type)) list.add(deserialiseObject((JsonObject)value, (Class<?>) type));
+            else list.add(value);
         }
         return isParameterized ? list : listToArray(list, (Class<?>)type);
     }
@@ -158,8 +162,189 @@ public class Serialiser {
     @SuppressWarnings("unchecked")
     public static <T> T deserialise(JsonStructure json, TypeInfo<T> info){
         if (json == null) return null;
-        if (json instanceof JsonArray) return (T)deserialiseArray((JsonArray)json, info.getType());
-        if (json instanceof JsonObject) return (T)deserialiseObject((JsonObject)json, info.getRawClass());
+        Probe probe = JsonInstrumentation.start(Phase.DESERIALISE);
+        Object result = null;
+        if (json instanceof JsonArray) result = deserialiseArray((JsonArray)json, info.getType());
+        else if (json instanceof JsonObject) result = deserialiseObject((JsonObject)json, info.getRawClass());
+        if (probe != null) probe.end(-1, -1, -1, -1);
+        return (T)result;
+    }
+
+    /**
+     * deserialise any parsed json value, including strings, numbers and booleans, widening numbers to the requested type where needed.
+     * example usage:
+     * <pre> Double price = deserialiseValue(42, new TypeInfo<>(){}); </pre>
+     * @param <T> the type to deserialise into
+     * @param value the parsed json value
+     * @param info the type info of the output type
+     * @return the value as the requested type
+     * @throws JsonDeserialisationException the value cannot be represented as the requested type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T deserialiseValue(Object value, TypeInfo<T> info) throws JsonDeserialisationException {
+        Class<?> type = info.getRawClass();
+        value = adaptRaw(value, type);
+        if (value == null) return null;
+        if (value instanceof JsonStructure && !type.isInstance(value)) return deserialise((JsonStructure)value, info);
+        value = coerceNumber(value, type);
+        if (!type.isInstance(value)) throw new JsonDeserialisationException("cannot deserialise a json " + value.getClass().getSimpleName() + " into " + type.getName());
+        return (T)value;
+    }
+
+    /**
+     * deserialises a {@link JsonStructure} into an existing instance rather than creating a new one, so that a pooled object can be
+     * refilled with each message. fields whose keys are present are overwritten, while fields whose keys are missing keep their
+     * current values. nested objects are refilled in place, lists are resized in place and arrays are refilled when their length matches,
+     * so processing messages of a steady shape allocates nothing beyond the parsed json. nested records are replaced, as are lists that
+     * cannot be resized to the new length. a list target needs its element type, so pass a {@link TypeInfo} to
+     * {@link #deserialiseInto(JsonStructure, Object, TypeInfo)} instead. example usage:
+     * <pre> Quote quote = pool.take(); Serialiser.deserialiseInto(json, quote); </pre>
+     * @param <T> a user defined class that stores the json data
+     * @param json the JsonStructure to deserialise
+     * @param target the object or array to fill
+     * @return the target, or a new array if the json array's length differs from the target array's
+     * @throws JsonDeserialisationException the target is a record or a list, or the data does not fit the target's fields
+     */
+    public static <T> T deserialiseInto(JsonStructure json, T target) throws JsonDeserialisationException {
+        return deserialiseInto(json, target, target.getClass());
+    }
+
+    /**
+     * deserialises a {@link JsonStructure} into an existing instance of a generic type such as a {@link List}, see {@link #deserialiseInto(JsonStructure, Object)}.
+     * example usage:
+     * <pre> Serialiser.deserialiseInto(json, quotes, new TypeInfo<List<Quote>>(){}); </pre>
+     * @param <T> a user defined class that stores the json data
+     * @param json the JsonStructure to deserialise
+     * @param target the object, list or array to fill
+     * @param info the type info of the target
+     * @return the target, or a new list or array if the target could not be reused
+     * @throws JsonDeserialisationException the target is a record, or the data does not fit the target's fields
+     */
+    public static <T> T deserialiseInto(JsonStructure json, T target, TypeInfo<T> info) throws JsonDeserialisationException {
+        return deserialiseInto(json, target, info.getType());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T deserialiseInto(JsonStructure json, T target, Type type) {
+        if (json == null) return target;
+        Probe probe = JsonInstrumentation.start(Phase.DESERIALISE);
+        Object result;
+        if (json instanceof JsonObject) {
+            if (!isReusable(target.getClass())) throw new JsonDeserialisationException("cannot deserialise into an instance of " + target.getClass().getName() + " as it is a record");
+            result = populate(target, (JsonObject)json);
+        }
+        else result = deserialiseValueInto(target, json, rawClass(type), type);
+        if (probe != null) probe.end(-1, -1, -1, -1);
+        return (T)result;
+    }
+
+    /**
+     * overwrites the fields of an existing object that has a json key in the json object
+     * @param target the object to fill
+     * @param object the json to deserialise
+     * @return the target
+     */
+    private static Object populate(Object target, JsonObject object) throws JsonDeserialisationException {
+        try {
+            for (BindingPlan.Property property : BindingPlan.of(target.getClass()).properties) {
+                GenericJsonValue<Object> jsonValue = object.getValue(property.name);
+                if (jsonValue == null) continue;
+                Object existing = property.type.isPrimitive() ? null : property.field.get(target);
+                Object value = deserialiseValueInto(existing, jsonValue.getValue(), property.type, property.genericType);
+                if (value != existing || existing == null) property.field.set(target, value);
+            }
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            throw new JsonDeserialisationException("cannot populate fields of the object");
+        }
+        return target;
+    }
+
+    /**
+     * deserialises a json value, reusing the existing value of the same slot where possible
+     * @param existing the current value, may be null
+     * @param value the json value
+     * @param type the declared type of the slot
+     * @param genericType the declared generic type of the slot
+     * @return the value to store in the slot
+     */
+    @SuppressWarnings("unchecked")
+    private static Object deserialiseValueInto(Object existing, Object value, Class<?> type, Type genericType) {
+        if (value == null) return null;
+        value = adaptRaw(value, type);
+        if (List.class.isAssignableFrom(type)) return deserialiseListInto((List<Object>)existing, (JsonArray)value, genericType);
+        if (type.isArray()) return deserialiseArrayInto(existing, (JsonArray)value, type);
+        if (isJsonPrimitive(type)) return value;
+        if (existing != null && isReusable(existing.getClass())) return populate(existing, (JsonObject)value);
+        return deserialiseObject((JsonObject)value, type);
+    }
+
+    private static Object deserialiseListInto(List<Object> existing, JsonArray array, Type listType) {
+        if (!(listType instanceof ParameterizedType)) throw new JsonDeserialisationException("cannot deserialise into a list without its element type, pass a TypeInfo such as new TypeInfo<List<MyClass>>(){}");
+        Type elementType = ((ParameterizedType)listType).getActualTypeArguments()[0];
+        Class<?> elementClass = rawClass(elementType);
+        if (elementClass == null) throw new JsonDeserialisationException("cannot deserialise into a list of " + elementType.getTypeName() + " as it is not a concrete type");
+        int length = array.length();
+        if (existing == null || !canRefill(existing, length)) return deserialiseArray(array, listType);
+        for (int i=0; i<length; i++) {
+            Object item = array.getValue(i).getValue();
+            if (i < existing.size()) {
+                Object current = existing.get(i);
+                Object value = deserialiseValueInto(current, item, elementClass, elementType);
+                if (value != current) existing.set(i, value);
+            }
+            else existing.add(deserialiseValueInto(null, item, elementClass, elementType));
+        }
+        if (existing.size() > length) existing.subList(length, existing.size()).clear();
+        return existing;
+    }
+
+    /**
+     * checks before anything is written that a list can be overwritten and resized to a new length, so that a fixed-size or
+     * unmodifiable list is replaced rather than left partly refilled. the probes leave the list's contents unchanged
+     * @param list the list to refill
+     * @param length the length it must end up with
+     * @return true if the list supports every operation refilling it needs
+     */
+    private static boolean canRefill(List<Object> list, int length) {
+        try {
+            if (!list.isEmpty()) list.set(0, list.get(0));
+            if (length > list.size()) {
+                list.add(null);
+                list.remove(list.size() - 1);
+            }
+            else if (length < list.size()) list.add(list.remove(list.size() - 1));
+            return true;
+        } catch (UnsupportedOperationException | IllegalArgumentException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    private static Object deserialiseArrayInto(Object existing, JsonArray array, Class<?> arrayType) {
+        int length = array.length();
+        if (existing == null || Array.getLength(existing) != length) return deserialiseArray(array, arrayType);
+        Class<?> component = arrayType.getComponentType();
+        if (component == int.class) { int[] values = (int[])existing; for (int i=0; i<length; i++) values[i] = array.getValue(i).getInt(); }
+        else if (component == long.class) { long[] values = (long[])existing; for (int i=0; i<length; i++) values[i] = array.getValue(i).getLong(); }
+        else if (component == float.class) { float[] values = (float[])existing; for (int i=0; i<length; i++) values[i] = array.getValue(i).getFloat(); }
+        else if (component == double.class) { double[] values = (double[])existing; for (int i=0; i<length; i++) values[i] = array.getValue(i).getDouble(); }
+        else {
+            Object[] values = (Object[])existing;
+            for (int i=0; i<length; i++) values[i] = deserialiseValueInto(values[i], array.getValue(i).getValue(), component, component);
+        }
+        return existing;
+    }
+
+    /**
+     * @param klass the class of an existing instance
+     * @return true if the fields of instances of the class can be overwritten, which is not the case for records
+     */
+    private static boolean isReusable(Class<?> klass) {
+        return !BindingPlan.of(klass).record;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) return (Class<?>)type;
+        if (type instanceof ParameterizedType) return (Class<?>)((ParameterizedType)type).getRawType();
         return null;
     }
 
@@ -172,33 +357,24 @@ public class Serialiser {
      */
     private static Object deserialiseObject(JsonObject object, Class<?> resultType) {
         if (object == null) return null;
-        Constructor<?> constructor = getConstructor(resultType);
-        return constructor.getParameterCount() > 0 ? instantiateWithParameterisedConstructor(object, constructor) : instantiateWithDefaultConstructor(object, constructor);
+        BindingPlan plan = BindingPlan.of(resultType);
+        return plan.constructor().getParameterCount() > 0 ? instantiateWithParameterisedConstructor(object, plan) : instantiateWithDefaultConstructor(object, plan);
     }
 
-    private static Object instantiateWithDefaultConstructor(JsonObject object, Constructor<?> constructor) throws JsonDeserialisationException {
+    private static Object instantiateWithDefaultConstructor(JsonObject object, BindingPlan plan) throws JsonDeserialisationException {
         Object newObject = null;
         try {
-            newObject = constructor.newInstance();
-            Field[] fields = newObject.getClass().getDeclaredFields();
+            newObject = plan.constructor().newInstance();
             for (String currentKey : object.keys()) {
-                Field field = Arrays.stream(fields).filter(f -> {
-                    if (!f.isAnnotationPresent(JsonProperty.class)) return false;
-                    String serialisedName = f.getDeclaredAnnotation(JsonProperty.class).value();
-                    return serialisedName.equals(currentKey);
-                }).findFirst().orElse(null);
-                if (field == null) continue;
-                Class<?> fType = field.getType();
-
-                boolean accessible = field.canAccess(newObject);
-                if (!accessible) field.setAccessible(true);                
-                if (List.class.isAssignableFrom(field.getType())) {
-                    field.set(newObject, deserialiseArray((JsonArray)object.getValue(currentKey).getValue(), field.getGenericType()));
-                }
-                else if (fType.isArray()) field.set(newObject, deserialiseArray((JsonArray)object.getValue(currentKey).getValue(), fType));
-                else if (!isJsonPrimitive(fType)) field.set(newObject, deserialiseObject((JsonObject)object.getValue(currentKey).getValue(), fType));
-                else field.set(newObject, object.getValue(currentKey).getValue());
-                if (!accessible) field.setAccessible(false);
+                BindingPlan.Property property = plan.property(currentKey);
+                if (property == null) continue;
+                Field field = property.field;
+                Class<?> fType = property.type;
+                Object value = adaptRaw(object.getValue(currentKey).getValue(), fType);
+                if (List.class.isAssignableFrom(fType)) field.set(newObject, deserialiseArray((JsonArray)value, property.genericType));
+                else if (fType.isArray()) field.set(newObject, deserialiseArray((JsonArray)value, fType));
+                else if (!isJsonPrimitive(fType)) field.set(newObject, deserialiseObject((JsonObject)value, fType));
+                else field.set(newObject, value);
             }
         }
         catch (InstantiationException | IllegalAccessException  | IllegalArgumentException | InvocationTargetException e) {
@@ -208,63 +384,80 @@ public class Serialiser {
     }
 
     /**
-     * creates a new instance of an object using a given constructor
+     * creates a new instance of an object using the plan's {@link JsonConstructor} or canonical record constructor. the arguments
+     * are passed through a spread method handle, which unboxes primitive parameters without a reflective call
      * @param obj the json to deserialoise
-     * @param constructor the constructor to use to create the object
+     * @param plan the binding plan of the class to create
      * @return the new object instance
      * @throws JsonDeserialisationException unable to adequately provide parameters for the constructor or the object was unable to be instantiated
      */
-    private static Object instantiateWithParameterisedConstructor(JsonObject obj, Constructor<?> constructor) throws JsonDeserialisationException {
-        JsonConstructor constructorAnnotation = constructor.getAnnotation(JsonConstructor.class);
-        Parameter[] params = constructor.getParameters();
-        List<JsonParam> paramNames = Arrays.stream(params)
-                                    .map(p -> Arrays.stream(p.getAnnotations())
-                                    .filter(a -> a.annotationType().isAssignableFrom(JsonParam.class))
-                                    .findFirst()
-                                    .map(JsonParam.class::cast)
-                                    .orElse(null))
-                                    .collect(Collectors.toList());
-        Object[] parameterPack = new Object[constructor.getParameterCount()];
+    private static Object instantiateWithParameterisedConstructor(JsonObject obj, BindingPlan plan) throws JsonDeserialisationException {
+        BindingPlan.Param[] params = plan.params();
+        Object[] parameterPack = new Object[params.length];
         for (int i=0; i<parameterPack.length; i++){
-            if (paramNames.get(i) == null && !constructorAnnotation.allowNonAnnotatedParams()) throw new JsonDeserialisationException("no annotation???");
-            GenericJsonValue<Object> jsonValue = obj.getValue(paramNames.get(i).value());
-            if (jsonValue == null && !paramNames.get(i).nullable()) throw new JsonDeserialisationException("Non-Nullable parameter does not exist in Json");
+            GenericJsonValue<Object> jsonValue = params[i].name != null ? obj.getValue(params[i].name) : null;
+            if (jsonValue == null && !params[i].nullable) throw new JsonDeserialisationException("Non-Nullable parameter does not exist in Json");
             Object value = jsonValue != null ? jsonValue.getValue() : null;
 
-            Class<?> type = params[i].getType();
-            if (List.class.isAssignableFrom(type)) parameterPack[i] = deserialiseArray((JsonArray)value, params[i].getParameterizedType());   
+            Class<?> type = params[i].type;
+            value = adaptRaw(value, type);
+            if (List.class.isAssignableFrom(type)) parameterPack[i] = deserialiseArray((JsonArray)value, params[i].genericType);   
             else if (type.isArray()) parameterPack[i] =  deserialiseArray((JsonArray)value, type);
             else if (!isJsonPrimitive(type)) parameterPack[i] = deserialiseObject((JsonObject)value, type);
-            else parameterPack[i] = value;
+            else parameterPack[i] = coerceNumber(value, type);
         }
         Object newObj = null;
+        MethodHandle creator = plan.creator();
         try{
-            newObj = constructor.newInstance(parameterPack);
-        } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
-            throw new JsonDeserialisationException("could not instantiate object");
+            if (creator != null) newObj = (Object)creator.invokeExact(parameterPack);
+            else newObj = plan.constructor().newInstance(parameterPack);
+        } catch (InvocationTargetException e) {
+            throw instantiationFailure(e.getCause());
+        } catch (Throwable e) {
+            throw instantiationFailure(e);
         }
         return newObj;
     }
 
     /**
-     * searches for a valid constructor to use for deserialisation
-     * @param klass the class to search
-     * @return the constructor to use
-     * @throws JsonDeserialisationException no valid constructor exists
+     * @param cause the exception thrown while calling a constructor, unwrapped from any reflective wrapper
+     * @return the exception to report, with the cause attached
+     * @throws Error the cause is an error such as running out of memory, which is rethrown as-is
+     */
+    private static JsonDeserialisationException instantiationFailure(Throwable cause) {
+        if (cause instanceof Error) throw (Error)cause;
+        if (cause instanceof JsonDeserialisationException) return (JsonDeserialisationException)cause;
+        return new JsonDeserialisationException("could not instantiate object", cause);
+    }
+
+    /**
+     * widens a json number to the boxed type a method handle expects for a numeric parameter, as reflection would
+     * @param value the json value
+     * @param type the parameter type
+     * @return the converted number, or the value unchanged if it already matches or is not a number
+     */
+    private static Object coerceNumber(Object value, Class<?> type) {
+        boolean integral = value instanceof Integer || value instanceof Long;
+        if ((type == long.class || type == Long.class) && value instanceof Integer) return Long.valueOf(((Integer)value).longValue());
+        if ((type == float.class || type == Float.class) && integral) return Float.valueOf(((Number)value).floatValue());
+        if ((type == double.class || type == Double.class) && (integral || value instanceof Float)) return Double.valueOf(((Number)value).doubleValue());
+        return value;
+    }
+
+    /**
+     * converts between parsed structures and {@link JsonRawValue}s to match the declared type, parsing raw values only when
+     * they are bound to something other than a raw value
+     * @param value the json value
+     * @param type the declared type
+     * @return the value in the form the declared type expects
      */
-    private static Constructor<?> getConstructor(Class<?> klass) throws JsonDeserialisationException {
-        Constructor<?> usableConstructor = null;
-        Constructor<?>[] constructors = klass.getConstructors();
-        List<Constructor<?>> annotatedConstructors = Arrays.stream(constructors).filter(c -> c.isAnnotationPresent(JsonConstructor.class)).collect(Collectors.toList());
-        if (annotatedConstructors.size() > 1) throw new JsonDeserialisationException("Cannot have more than 1 Json Contructor");
-        else if (annotatedConstructors.size() == 1) usableConstructor = annotatedConstructors.get(0);
-        else usableConstructor = Arrays.stream(constructors).filter(c -> c.getParameterCount() == 0).findFirst().orElse(null);
-        if (usableConstructor == null) throw new JsonDeserialisationException("No usable constructors for deserialisation");
-        return usableConstructor;
+    private static Object adaptRaw(Object value, Class<?> type) {
+        if (type == JsonRawValue.class) return value instanceof JsonStructure ? JsonRawValue.of((JsonStructure)value) : value;
+        return value instanceof JsonRawValue ? ((JsonRawValue)value).getStructure() : value;
     }
 
     /**
-     * checks if the given class is a json primitive type
+     * checks if the given class is a json primitive type. {@link JsonRawValue}s are passed through like primitives
      * @param type the type to check
      * @return true if it is a json primitive
      */
@@ -272,6 +465,6 @@ public class Serialiser {
         return type.isAssignableFrom(String.class) || type.isAssignableFrom(boolean.class) || type.isAssignableFrom(float.class) 
                 || type.isAssignableFrom(int.class) || type.isAssignableFrom(long.class) || type.isAssignableFrom(double.class)
                 || type.isAssignableFrom(Boolean.class) || type.isAssignableFrom(Float.class) || type.isAssignableFrom(Integer.class) 
-                || type.isAssignableFrom(Long.class) || type.isAssignableFrom(Double.class);
+                || type.isAssignableFrom(Long.class) || type.isAssignableFrom(Double.class) || type.isAssignableFrom(JsonRawValue.class);
     }
 }
@@ -9,7 +9,7 @@ import com.royston.jsonparser.exceptions.JsonTypeException;
 
 public class GenericJsonValue<E> {
 
-    private E value;
+    private final E value;
 
     public GenericJsonValue(E object){
         value = object;
@@ -73,22 +73,68 @@ public class GenericJsonValue<E> {
         return value instanceof String ? Optional.of((String)value) : Optional.empty();
     }
 
+    /**
+     * @return the array, parsing it first if it is held as a {@link JsonRawValue}
+     * @throws JsonTypeException the value is not an array
+     */
     public JsonArray getJsonArray() throws JsonTypeException {
-        if (value instanceof JsonArray) return (JsonArray)value;
+        Object structure = structureValue();
+        if (structure instanceof JsonArray) return (JsonArray)structure;
         throw new JsonTypeException("value cannot be cast to a JsonArray");
     }
 
     public Optional<JsonArray> getJsonArrayOptional() {
-        return value instanceof JsonArray ? Optional.of((JsonArray)value) : Optional.empty();
+        Object structure = structureValue();
+        return structure instanceof JsonArray ? Optional.of((JsonArray)structure) : Optional.empty();
     }
 
+    /**
+     * @return the object, parsing it first if it is held as a {@link JsonRawValue}
+     * @throws JsonTypeException the value is not an object
+     */
     public JsonObject getJsonObject() throws JsonTypeException {
-        if (value instanceof JsonObject) return (JsonObject)value;
+        Object structure = structureValue();
+        if (structure instanceof JsonObject) return (JsonObject)structure;
         throw new JsonTypeException("value cannot be cast to a JsonObject");
     }
 
     public Optional<JsonObject> getJsonObjectOptional() {
-        return value instanceof JsonObject ? Optional.of((JsonObject)value) : Optional.empty();
+        Object structure = structureValue();
+        return structure instanceof JsonObject ? Optional.of((JsonObject)structure) : Optional.empty();
+    }
+
+    /**
+     * @return the value as it was kept unparsed, see {@link JsonRawValue}
+     * @throws JsonTypeException the value is not a raw value, including when it is an already parsed object or array
+     */
+    public JsonRawValue getRawValue() throws JsonTypeException {
+        if (value instanceof JsonRawValue) return (JsonRawValue)value;
+        throw new JsonTypeException("value cannot be cast to a JsonRawValue");
+    }
+
+    /**
+     * @return the value as it was kept unparsed, or an empty optional if it is not a raw value
+     */
+    public Optional<JsonRawValue> getRawValueOptional() {
+        return value instanceof JsonRawValue ? Optional.of((JsonRawValue)value) : Optional.empty();
+    }
+
+    /**
+     * compares the wrapped values by content, see {@link JsonStructure#equals(Object)}
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof GenericJsonValue && JsonStructure.valuesEqual(value, ((GenericJsonValue<?>)other).value, JsonStructure.NumberComparison.EXACT);
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = JsonStructure.valueHash(value);
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    private Object structureValue() {
+        return value instanceof JsonRawValue ? ((JsonRawValue)value).getStructure() : value;
     }
 
     private boolean isNumberType() {
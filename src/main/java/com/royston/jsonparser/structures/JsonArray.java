@@ -1,24 +1,158 @@
 package com.royston.jsonparser.structures;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import com.royston.jsonparser.instrumentation.JsonInstrumentation;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation.Probe;
+import com.royston.jsonparser.instrumentation.PhaseMetrics.Phase;
+
 /**
  * stores a {@link List} of generic objects like the json array structure
  */
 public class JsonArray extends JsonStructure implements Iterable<GenericJsonValue<Object>> {
 
-    private final List<GenericJsonValue<Object>> valueList = new ArrayList<>();
+    private final List<GenericJsonValue<Object>> valueList;
+    private final boolean frozen;
+    private int rewrites = 0;
+
+    public JsonArray(){
+        this(new ArrayList<>(), false);
+    }
+
+    JsonArray(ArrayList<GenericJsonValue<Object>> valueList, boolean frozen){
+        this.valueList = frozen ? Collections.unmodifiableList(valueList) : valueList;
+        this.frozen = frozen;
+    }
 
     /**
      * adds object to array list and wraps it in a {@link GenericJsonValue}
      * @param value object to add
+     * @throws UnsupportedOperationException the array is frozen
      */
     public void addValue(Object value){
+        checkMutable();
         valueList.add(new GenericJsonValue<>(value));
+        attach(value);
+        super.modified();
+    }
+
+    /**
+     * inserts object into the array list at a position, shifting any later values along
+     * @param index the position to insert at, from 0 to {@link #length()}
+     * @param value object to add
+     * @throws UnsupportedOperationException the array is frozen
+     * @throws IndexOutOfBoundsException the index is outside of the array
+     */
+    public void addValue(int index, Object value){
+        checkMutable();
+        valueList.add(index, new GenericJsonValue<>(value));
+        attach(value);
+        modified();
+    }
+
+    /**
+     * replaces the value at a position in the array
+     * @param index the position in the array
+     * @param value object to store
+     * @return the {@link GenericJsonValue} previously at the position
+     * @throws UnsupportedOperationException the array is frozen
+     * @throws IndexOutOfBoundsException the index is outside of the array
+     */
+    public GenericJsonValue<Object> setValue(int index, Object value){
+        checkMutable();
+        GenericJsonValue<Object> previous = valueList.set(index, new GenericJsonValue<>(value));
+        detach(previous);
+        attach(value);
+        modified();
+        return previous;
+    }
+
+    /**
+     * removes the value at a position in the array, shifting any later values back
+     * @param index the position in the array
+     * @return the removed {@link GenericJsonValue}
+     * @throws UnsupportedOperationException the array is frozen
+     * @throws IndexOutOfBoundsException the index is outside of the array
+     */
+    public GenericJsonValue<Object> removeValue(int index){
+        checkMutable();
+        GenericJsonValue<Object> removed = valueList.remove(index);
+        detach(removed);
+        modified();
+        return removed;
+    }
+
+    /**
+     * creates a frozen copy of the array with a single value replaced. when this array is frozen all other values are shared
+     * with it, so updating a nested value only copies the objects and arrays along the path to it. a mutable array is frozen
+     * first, which copies every value nested inside it, so freeze a mutable array once before making a series of updates
+     * @param index the position in the array to replace
+     * @param value the value object to add, frozen if it is a structure
+     * @return the new frozen {@link JsonArray}
+     * @throws IndexOutOfBoundsException the index is outside of the array
+     */
+    public JsonArray with(int index, Object value){
+        ArrayList<GenericJsonValue<Object>> copy = new ArrayList<>(freeze().valueList);
+        copy.set(index, new GenericJsonValue<>(freezeObject(value)));
+        return new JsonArray(copy, true);
+    }
+
+    /**
+     * builds a hash index over the objects in the array, keyed by the value at a key path in each object. the index stays up to date
+     * by itself: values appended with {@link #addValue(Object)} are added to it on the next lookup, while any other change to the
+     * array or to an indexed key makes the next lookup rebuild it, which reads every element again. example usage:
+     * <pre> JsonObject product = products.indexBy("id").getFirst(1042); </pre>
+     * @param path the object keys leading from each element to its key value
+     * @return the index
+     */
+    public JsonIndex indexBy(String... path){
+        return new JsonIndex(this, JsonIndex.Kind.HASH, path);
+    }
+
+    /**
+     * builds an index over the objects in the array, keyed by the value at a key path in each object.
+     * it is kept up to date as described in {@link #indexBy(String...)}. rebuilding a sorted index also sorts the keys again
+     * @param kind {@link JsonIndex.Kind#SORTED} to also support range queries
+     * @param path the object keys leading from each element to its key value
+     * @return the index
+     */
+    public JsonIndex indexBy(JsonIndex.Kind kind, String... path){
+        return new JsonIndex(this, kind, path);
+    }
+
+    /**
+     * counts every modification except appending to the end, including changes reaching the array from values nested inside it
+     */
+    @Override
+    void modified(){
+        rewrites++;
+        super.modified();
+    }
+
+    /**
+     * @return a counter that changes on every modification other than {@link #addValue(Object)}, so a {@link JsonIndex} can tell
+     * when it only has new elements to add
+     */
+    int rewrites(){
+        return rewrites;
+    }
+
+    @Override
+    public JsonArray freeze(){
+        if (frozen) return this;
+        ArrayList<GenericJsonValue<Object>> copy = new ArrayList<>(valueList.size());
+        for (GenericJsonValue<Object> item : valueList) copy.add(freezeValue(item));
+        return new JsonArray(copy, true);
+    }
+
+    @Override
+    public boolean isFrozen(){
+        return frozen;
     }
 
     /**
@@ -53,7 +187,10 @@ public class JsonArray extends JsonStructure implements Iterable<GenericJsonValu
      */
     @Override
     public String toString(){
-        return write(1, 4);
+        Probe probe = JsonInstrumentation.start(Phase.WRITE);
+        String output = write(1, 4);
+        if (probe != null) probe.end(-1, output.length(), -1, -1);
+        return output;
     }
 
     /**
@@ -63,58 +200,59 @@ public class JsonArray extends JsonStructure implements Iterable<GenericJsonValu
      */
     @Override
     public String toString(int indentAmount){
+        Probe probe = JsonInstrumentation.start(Phase.WRITE);
         String output = write(1, indentAmount);
-        if (indentAmount == 0) output = output.replaceAll("\n", "").replaceAll("\r", "").replaceAll(" ", "");
+        if (probe != null) probe.end(-1, output.length(), -1, -1);
         return output;
     }
 
     /**
      * converts the {@link JsonArray} into a raw json string
      * @param indentLevel the number of indentation blocks deep to start writing from
-     * @param indentAmount the amount of spaces to add for each indentation block
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
      * @return the raw json string produced
      */
     protected String write(int indentLevel, int indentAmount){
-        String output = "[";
-        if (valueList.isEmpty()) return "[]";
-        for (GenericJsonValue<?> item : valueList){
-            Object value = item.getValue();
-            output += newLine(indentLevel, indentAmount);
-            if (value == null){
-                output += ("null,");
-            }
-            else if (value instanceof String){
-                output += ("\"" + value + "\"") + ",";
-            }
-            else if (value instanceof Boolean){
-                output += Boolean.toString((Boolean)value) + ",";
-            }
-            else if (value instanceof JsonObject){
-                output += ((JsonObject)value).write(indentLevel + 1, indentAmount) + ",";
-            }
-            else if (value instanceof JsonArray){
-                output += ((JsonArray)value).write(indentLevel + 1, indentAmount) + ",";
-            }
-            else output += value.toString() + ",";
+        JsonOutput output = new JsonOutput();
+        write(output, indentLevel, indentAmount);
+        return output.toString();
+    }
+
+    @Override
+    Iterable<GenericJsonValue<Object>> values(){
+        return valueList;
+    }
+
+    @Override
+    long computeHash(){
+        long hash = 0x617272L;
+        for (int i=0; i<length(); i++) hash = hash * 31 + valueHash(getValue(i).getValue());
+        return mix(hash);
+    }
+
+    @Override
+    boolean sameContent(JsonStructure other, NumberComparison numbers){
+        JsonArray array = (JsonArray)other;
+        if (length() != array.length()) return false;
+        for (int i=0; i<length(); i++) {
+            if (!valuesEqual(getValue(i).getValue(), array.getValue(i).getValue(), numbers)) return false;
         }
-        output = output.substring(0, output.length() - 1);
-        output += newLine(indentLevel -1 , indentAmount) + "]";
-        return output;
+        return true;
     }
 
-    /**
-     * creates a new line for the json string and applies the indentation amount
-     * @param indentLevel the number of indentation blocks deep to start writing from
-     * @param indentAmount the amount of spaces to add for each indentation block
-     * @return the raw json string produced
-     */
-    private String newLine(int indentLevel, int indentAmount){
-        String output = "\n";
-        for (int i=0; i<indentLevel; i++){
-            for (int j=0; j<indentAmount; j++){
-                output += " ";
-            }
+    @Override
+    void writeTo(JsonOutput output, int indentLevel, int indentAmount){
+        if (valueList.isEmpty()) { output.append("[]"); return; }
+        output.append('[');
+        boolean first = true;
+        for (GenericJsonValue<Object> item : valueList){
+            if (!first) output.append(',');
+            first = false;
+            newLine(output, indentLevel, indentAmount);
+            writeValue(output, item.getValue(), indentLevel + 1, indentAmount);
+            output.checkpoint();
         }
-        return output;
+        newLine(output, indentLevel - 1, indentAmount);
+        output.append(']');
     }
 }
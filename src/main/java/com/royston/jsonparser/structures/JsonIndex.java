@@ -0,0 +1,366 @@
+package com.royston.jsonparser.structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * a secondary index over a {@link JsonArray} of objects, mapping the value found at a key path in each object to the objects holding it.
+ * integer keys are held in a primitive open addressing table and other keys in a hash map, while a sorted index also answers range queries.
+ * elements that are not objects or have no primitive value at the path are left out. the index notices when the array, or any object it
+ * read a key through, is modified. values appended to the end of the array are added on the next lookup, while any other change rebuilds
+ * the index on the next lookup. large arrays are indexed in parallel. example usage:
+ * <pre>
+ * JsonIndex products = catalogue.indexBy("id");
+ * JsonObject product = products.getFirst(1042);
+ * </pre>
+ * like the array itself, an index over a mutable array must not be used from several threads at once
+ */
+public final class JsonIndex {
+
+    public enum Kind
+    {
+        HASH,
+        SORTED
+    };
+
+    private static final int PARALLEL_THRESHOLD = 16384;
+    private static final Comparator<Object> KEY_ORDER = JsonIndex::compareKeys;
+
+    private final JsonArray array;
+    private final Kind kind;
+    private final String[] path;
+    private int version;
+    private int rewrites;
+    private int indexedLength;
+    private int size;
+
+    private int[] next;
+    private long[] longKeys;
+    private int[] longFirst;
+    private int[] longLast;
+    private Map<Object, int[]> chains;
+
+    private Object[] sortedKeys;
+    private int[] sortedPositions;
+
+    JsonIndex(JsonArray array, Kind kind, String[] path){
+        if (path.length == 0) throw new IllegalArgumentException("an index needs at least one key");
+        this.array = array;
+        this.kind = kind;
+        this.path = path.clone();
+        build();
+    }
+
+    /**
+     * @param key the key value to look up
+     * @return every object whose key equals the value, in array order
+     */
+    public List<JsonObject> get(Object key) {
+        ensureCurrent();
+        Object normalised = normalise(key);
+        if (normalised == null) return Collections.emptyList();
+        List<JsonObject> matches = new ArrayList<>();
+        if (kind == Kind.SORTED) {
+            for (int i=lowerBound(normalised); i<size && compareKeys(sortedKeys[i], normalised) == 0; i++) matches.add(element(sortedPositions[i]));
+            return matches;
+        }
+        for (int position = firstPosition(normalised); position >= 0; position = next[position] - 1) matches.add(element(position));
+        return matches;
+    }
+
+    /**
+     * @param key the key value to look up
+     * @return the first object in array order whose key equals the value, or null if there is none
+     */
+    public JsonObject getFirst(Object key) {
+        ensureCurrent();
+        Object normalised = normalise(key);
+        if (normalised == null) return null;
+        if (kind == Kind.SORTED) {
+            int i = lowerBound(normalised);
+            return i < size && compareKeys(sortedKeys[i], normalised) == 0 ? element(sortedPositions[i]) : null;
+        }
+        int position = firstPosition(normalised);
+        return position >= 0 ? element(position) : null;
+    }
+
+    /**
+     * looks up an integer key without boxing it
+     * @param key the key value to look up
+     * @return the first object in array order whose key equals the value, or null if there is none
+     */
+    public JsonObject getFirst(long key) {
+        ensureCurrent();
+        if (longKeys == null) return getFirst(Long.valueOf(key));
+        int position = longFirstPosition(key);
+        return position >= 0 ? element(position) : null;
+    }
+
+    public boolean containsKey(Object key) {
+        return getFirst(key) != null;
+    }
+
+    /**
+     * finds the objects with keys in a range. numbers sort before strings, and strings sort lexicographically
+     * @param fromInclusive the lowest key value to include
+     * @param toExclusive the key value to stop before
+     * @return the matching objects in key order
+     * @throws UnsupportedOperationException the index is not {@link Kind#SORTED}
+     */
+    public List<JsonObject> range(Object fromInclusive, Object toExclusive) {
+        if (kind != Kind.SORTED) throw new UnsupportedOperationException("range queries need a sorted index");
+        ensureCurrent();
+        Object from = normalise(fromInclusive), to = normalise(toExclusive);
+        List<JsonObject> matches = new ArrayList<>();
+        if (from == null || to == null) return matches;
+        for (int i=lowerBound(from); i<size && compareKeys(sortedKeys[i], to) < 0; i++) matches.add(element(sortedPositions[i]));
+        return matches;
+    }
+
+    /**
+     * @return the number of objects held in the index
+     */
+    public int size() {
+        ensureCurrent();
+        return size;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return false if the array has been modified since the index was last brought up to date, in which case the next lookup updates it
+     */
+    public boolean isCurrent() {
+        return version == array.version();
+    }
+
+    /**
+     * adds the elements appended since the last update if nothing else has changed, otherwise rebuilds the whole index
+     */
+    private void ensureCurrent() {
+        if (isCurrent()) return;
+        int length = array.length();
+        if (array.rewrites() != rewrites || length < indexedLength) {
+            build();
+            return;
+        }
+        for (int position=indexedLength; position<length; position++) {
+            Object key = extractKey(position);
+            if (key == null) continue;
+            if (!insert(key, position)) {
+                build();
+                return;
+            }
+        }
+        indexedLength = length;
+        version = array.version();
+    }
+
+    private void build() {
+        int length = array.length();
+        version = array.version();
+        rewrites = array.rewrites();
+        indexedLength = length;
+        Object[] keys = new Object[length];
+        IntStream positions = IntStream.range(0, length);
+        if (length >= PARALLEL_THRESHOLD) positions = positions.parallel();
+        positions.forEach(i -> keys[i] = extractKey(i));
+        size = (int)Arrays.stream(keys).filter(key -> key != null).count();
+        next = null; longKeys = null; longFirst = null; longLast = null; chains = null; sortedKeys = null; sortedPositions = null;
+        if (kind == Kind.SORTED) buildSorted(keys, length);
+        else if (Arrays.stream(keys).allMatch(key -> key == null || key instanceof Long)) buildLongTable(keys, length);
+        else buildHashMap(keys, length);
+    }
+
+    private void buildSorted(Object[] keys, int length) {
+        Integer[] order = IntStream.range(0, length).filter(i -> keys[i] != null).boxed().toArray(Integer[]::new);
+        Comparator<Integer> byKey = Comparator.comparing(i -> keys[i], KEY_ORDER);
+        if (order.length >= PARALLEL_THRESHOLD) Arrays.parallelSort(order, byKey);
+        else Arrays.sort(order, byKey);
+        sortedKeys = new Object[Math.max(16, order.length)];
+        sortedPositions = new int[sortedKeys.length];
+        for (int i=0; i<order.length; i++) {
+            sortedPositions[i] = order[i];
+            sortedKeys[i] = keys[order[i]];
+        }
+    }
+
+    private void buildLongTable(Object[] keys, int length) {
+        int capacity = tableCapacity(size);
+        longKeys = new long[capacity];
+        longFirst = new int[capacity];
+        longLast = new int[capacity];
+        next = new int[Math.max(16, length)];
+        for (int i=0; i<length; i++) {
+            if (keys[i] != null) insertLong((Long)keys[i], i);
+        }
+    }
+
+    private void buildHashMap(Object[] keys, int length) {
+        chains = new HashMap<>(Math.max(16, size * 2));
+        next = new int[Math.max(16, length)];
+        for (int i=0; i<length; i++) {
+            if (keys[i] != null) insertChained(keys[i], i);
+        }
+    }
+
+    /**
+     * adds a single appended element, whose position is after every element already in the index
+     * @return false if the key does not fit the current layout, so the index must be rebuilt
+     */
+    private boolean insert(Object key, int position) {
+        size++;
+        if (kind == Kind.SORTED) {
+            insertSorted(key, position);
+            return true;
+        }
+        if (position >= next.length) next = Arrays.copyOf(next, Math.max(position + 1, next.length * 2));
+        if (chains != null) {
+            insertChained(key, position);
+            return true;
+        }
+        if (!(key instanceof Long) || size * 2 > longKeys.length) return false;
+        insertLong((Long)key, position);
+        return true;
+    }
+
+    private void insertSorted(Object key, int position) {
+        int low = 0, high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKeys(sortedKeys[middle], key) <= 0) low = middle + 1;
+            else high = middle;
+        }
+        if (size > sortedKeys.length) {
+            sortedKeys = Arrays.copyOf(sortedKeys, sortedKeys.length * 2);
+            sortedPositions = Arrays.copyOf(sortedPositions, sortedKeys.length);
+        }
+        System.arraycopy(sortedKeys, low, sortedKeys, low + 1, size - 1 - low);
+        System.arraycopy(sortedPositions, low, sortedPositions, low + 1, size - 1 - low);
+        sortedKeys[low] = key;
+        sortedPositions[low] = position;
+    }
+
+    /**
+     * appends a position to the chain of its key, so positions sharing a key stay in array order
+     */
+    private void insertLong(long key, int position) {
+        int slot = slot(key);
+        while (longFirst[slot] != 0 && longKeys[slot] != key) slot = (slot + 1) & (longKeys.length - 1);
+        if (longFirst[slot] == 0) {
+            longKeys[slot] = key;
+            longFirst[slot] = position + 1;
+        }
+        else next[longLast[slot] - 1] = position + 1;
+        longLast[slot] = position + 1;
+        next[position] = 0;
+    }
+
+    private void insertChained(Object key, int position) {
+        int[] chain = chains.get(key);
+        if (chain == null) chains.put(key, new int[] { position + 1, position + 1 });
+        else {
+            next[chain[1] - 1] = position + 1;
+            chain[1] = position + 1;
+        }
+        next[position] = 0;
+    }
+
+    /**
+     * reads the key of an element, marking every mutable object read along the way so that modifying it invalidates the index.
+     * frozen objects can never change and may be shared with other threads, so they are left untouched
+     */
+    private Object extractKey(int position) {
+        Object value = array.getValue(position).getValue();
+        for (String key : path) {
+            if (value instanceof JsonRawValue) value = ((JsonRawValue)value).getStructure();
+            if (!(value instanceof JsonObject)) return null;
+            JsonObject object = (JsonObject)value;
+            if (!object.isFrozen()) object.markIndexed();
+            GenericJsonValue<Object> child = object.getValue(key);
+            if (child == null) return null;
+            value = child.getValue();
+        }
+        return normalise(value);
+    }
+
+    private int firstPosition(Object key) {
+        if (longKeys != null) return key instanceof Long ? longFirstPosition((Long)key) : -1;
+        int[] chain = chains.get(key);
+        return chain == null ? -1 : chain[0] - 1;
+    }
+
+    private int longFirstPosition(long key) {
+        int slot = slot(key);
+        while (longFirst[slot] != 0) {
+            if (longKeys[slot] == key) return longFirst[slot] - 1;
+            slot = (slot + 1) & (longKeys.length - 1);
+        }
+        return -1;
+    }
+
+    private int slot(long key) {
+        return (int)JsonStructure.mix(key) & (longKeys.length - 1);
+    }
+
+    /**
+     * @return a power of two table size that keeps the table at most half full, with room for appended keys
+     */
+    private static int tableCapacity(int keys) {
+        return Integer.highestOneBit(Math.max(8, keys * 2 - 1)) << 1;
+    }
+
+    private int lowerBound(Object key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKeys(sortedKeys[middle], key) < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private JsonObject element(int position) {
+        return array.getValue(position).getJsonObject();
+    }
+
+    /**
+     * converts a key value to the form it is stored in, so integers of any boxed type and floating point numbers of either precision
+     * match. the parser stores short decimals as floats, so floats are widened through their decimal form, making a parsed 19.99
+     * equal to the double 19.99 rather than to 19.9899997711...
+     * @return the normalised key, or null if the value cannot be indexed
+     */
+    private static Object normalise(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) return ((Number)key).longValue();
+        if (key instanceof Float || key instanceof Double) {
+            double value = key instanceof Float ? Double.parseDouble(key.toString()) : (Double)key;
+            if (value == Math.rint(value) && Math.abs(value) < 0x1p63) return (long)value;
+            return value;
+        }
+        if (key instanceof String || key instanceof Boolean || key instanceof Number) return key;
+        return null;
+    }
+
+    private static int compareKeys(Object first, Object second) {
+        int rank = Integer.compare(rank(first), rank(second));
+        if (rank != 0) return rank;
+        if (first instanceof Long && second instanceof Long) return Long.compare((Long)first, (Long)second);
+        if (first instanceof Number) return Double.compare(((Number)first).doubleValue(), ((Number)second).doubleValue());
+        if (first instanceof String) return ((String)first).compareTo((String)second);
+        return Boolean.compare((Boolean)first, (Boolean)second);
+    }
+
+    private static int rank(Object key) {
+        if (key instanceof Number) return 0;
+        if (key instanceof String) return 1;
+        return 2;
+    }
+}
@@ -1,23 +1,95 @@
 package com.royston.jsonparser.structures;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.royston.jsonparser.instrumentation.JsonInstrumentation;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation.Probe;
+import com.royston.jsonparser.instrumentation.PhaseMetrics.Phase;
+
 /**
  * stores a {@code LinkedHashMap<String, GenericJsonValue<Object>>} of generic objects to mimic the json object structure
  */
 public class JsonObject extends JsonStructure {
 
-    private final LinkedHashMap<String, GenericJsonValue<Object>> keyValueMap = new LinkedHashMap<>();
+    private final Map<String, GenericJsonValue<Object>> keyValueMap;
+    private final boolean frozen;
+
+    public JsonObject(){
+        this(new LinkedHashMap<>(), false);
+    }
+
+    JsonObject(LinkedHashMap<String, GenericJsonValue<Object>> keyValueMap, boolean frozen){
+        this.keyValueMap = frozen ? Collections.unmodifiableMap(keyValueMap) : keyValueMap;
+        this.frozen = frozen;
+    }
 
     /**
      * adds object to map and wraps it in a {@link GenericJsonValue}
      * @param key the json string key for the value
      * @param value the value object to add
+     * @throws UnsupportedOperationException the object is frozen
      */
     public void addValue(String key, Object value){
-        keyValueMap.put(key, new GenericJsonValue<>(value));
+        checkMutable();
+        detach(keyValueMap.put(key, new GenericJsonValue<>(value)));
+        attach(value);
+        modified();
+    }
+
+    /**
+     * removes a key and its value from the map
+     * @param key the json string key to remove
+     * @return the removed {@link GenericJsonValue}, or null if the key does not exist
+     * @throws UnsupportedOperationException the object is frozen
+     */
+    public GenericJsonValue<Object> removeValue(String key){
+        checkMutable();
+        GenericJsonValue<Object> removed = keyValueMap.remove(key);
+        if (removed != null) {
+            detach(removed);
+            modified();
+        }
+        return removed;
+    }
+
+    public boolean containsKey(String key){
+        return keyValueMap.containsKey(key);
+    }
+
+    /**
+     * creates a frozen copy of the object with a single value added or replaced. when this object is frozen all other values are
+     * shared with it, so updating a nested value only copies the objects and arrays along the path to it. a mutable object is
+     * frozen first, which copies every value nested inside it, so freeze a mutable document once before making a series of updates.
+     * example usage:
+     * <pre>
+     * JsonObject config = parsed.freeze();
+     * JsonObject updated = config.with("db", config.getValue("db").getJsonObject().with("port", 5433));
+     * </pre>
+     * @param key the json string key for the value
+     * @param value the value object to add, frozen if it is a structure
+     * @return the new frozen {@link JsonObject}
+     */
+    public JsonObject with(String key, Object value){
+        LinkedHashMap<String, GenericJsonValue<Object>> copy = new LinkedHashMap<>(freeze().keyValueMap);
+        copy.put(key, new GenericJsonValue<>(freezeObject(value)));
+        return new JsonObject(copy, true);
+    }
+
+    @Override
+    public JsonObject freeze(){
+        if (frozen) return this;
+        LinkedHashMap<String, GenericJsonValue<Object>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, GenericJsonValue<Object>> entry : keyValueMap.entrySet()) copy.put(entry.getKey(), freezeValue(entry.getValue()));
+        return new JsonObject(copy, true);
+    }
+
+    @Override
+    public boolean isFrozen(){
+        return frozen;
     }
 
     /**
@@ -43,7 +115,10 @@ public class JsonObject extends JsonStructure {
      */
     @Override
     public String toString(){
-        return write(1, 4);
+        Probe probe = JsonInstrumentation.start(Phase.WRITE);
+        String output = write(1, 4);
+        if (probe != null) probe.end(-1, output.length(), -1, -1);
+        return output;
     }
 
     /**
@@ -52,59 +127,70 @@ public class JsonObject extends JsonStructure {
      * @return the raw json string produced
      */
     public String toString(int indentAmount){
+        Probe probe = JsonInstrumentation.start(Phase.WRITE);
         String output = write(1, indentAmount);
-        if (indentAmount == 0) output = output.replaceAll("\n", "").replaceAll("\r", "").replaceAll(" ", "");
+        if (probe != null) probe.end(-1, output.length(), -1, -1);
         return output;
     }
 
     /**
      * converts the {@link JsonObject} into a raw json string
      * @param indentLevel the number of indentation blocks deep to start writing from
-     * @param indentAmount the amount of spaces to add for each indentation block
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
      * @return the raw json string produced
      */
     protected String write(int indentLevel, int indentAmount){
-        String output = "{";
-        List<String> keys = this.keys();
-        if (keys.isEmpty()) return "{}";
-        for (String key : keys){
-            output += newLine(indentLevel, indentAmount);
-            Object value = keyValueMap.get(key).getValue();
-            if (value == null){
-                output += ("\"" + key + "\"" + ": " + "null") + ",";
-            }
-            else if (value instanceof String){
-                output += ("\"" + key + "\"" + ": " + "\"" + value + "\"") + ",";
-            }
-            else if (value instanceof Boolean){
-                output += ("\"" + key + "\"" + ": " + Boolean.toString((Boolean)value)) + ",";
-            }
-            else if (value instanceof JsonObject){
-                output += output += ("\"" + key + "\"" + ": " + ((JsonObject)value).write(indentLevel + 1, indentAmount)) + ",";
-            }
-            else if (value instanceof JsonArray){
-                output += ("\"" + key + "\"" + ": " + ((JsonArray)value).write(indentLevel + 1, indentAmount)) + ",";
-            }
-            else output += ("\"" + key + "\"" + ": " + value.toString()) + ",";
-        }
-        output = output.substring(0, output.length()-1);
-        output += newLine(indentLevel -1 , indentAmount) + "}";
-        return output;
+        JsonOutput output = new JsonOutput();
+        write(output, indentLevel, indentAmount);
+        return output.toString();
     }
 
     /**
-     * creates a new line for the json string and applies the indentation amount
-     * @param indentLevel the number of indentation blocks deep to start writing from
-     * @param indentAmount the amount of spaces to add for each indentation block
-     * @return the raw json string produced
+     * @return the number of keys in the object
      */
-    private String newLine(int indentLevel, int indentAmount){
-        String output = "\n";
-        for (int i=0; i<indentLevel; i++){
-            for (int j=0; j<indentAmount; j++){
-                output += " ";
-            }
+    int size(){
+        return keyValueMap.size();
+    }
+
+    @Override
+    Iterable<GenericJsonValue<Object>> values(){
+        return keyValueMap.values();
+    }
+
+    @Override
+    long computeHash(){
+        long hash = 0x6f626aL;
+        for (Map.Entry<String, GenericJsonValue<Object>> entry : keyValueMap.entrySet()) {
+            hash += mix(valueHash(entry.getKey()) * 31 + valueHash(entry.getValue().getValue()));
         }
-        return output;
+        return mix(hash);
+    }
+
+    @Override
+    boolean sameContent(JsonStructure other, NumberComparison numbers){
+        JsonObject object = (JsonObject)other;
+        if (size() != object.size()) return false;
+        for (Map.Entry<String, GenericJsonValue<Object>> entry : keyValueMap.entrySet()) {
+            GenericJsonValue<Object> value = object.getValue(entry.getKey());
+            if (value == null || !valuesEqual(entry.getValue().getValue(), value.getValue(), numbers)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    void writeTo(JsonOutput output, int indentLevel, int indentAmount){
+        if (keyValueMap.isEmpty()) { output.append("{}"); return; }
+        output.append('{');
+        boolean first = true;
+        for (Map.Entry<String, GenericJsonValue<Object>> entry : keyValueMap.entrySet()){
+            if (!first) output.append(',');
+            first = false;
+            newLine(output, indentLevel, indentAmount);
+            output.append('"').append(entry.getKey()).append(indentAmount == 0 ? "\":" : "\": ");
+            writeValue(output, entry.getValue().getValue(), indentLevel + 1, indentAmount);
+            output.checkpoint();
+        }
+        newLine(output, indentLevel - 1, indentAmount);
+        output.append('}');
     }
 }
@@ -0,0 +1,94 @@
+package com.royston.jsonparser.structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * the character buffer structures are written into. when backed by a {@link Writer} the buffer is drained whenever it fills up
+ * between values, so writing a large document only holds a bounded amount of text in memory
+ */
+final class JsonOutput {
+
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private final StringBuilder builder = new StringBuilder();
+    private final Writer writer;
+    private int captures = 0;
+    private long drained = 0;
+
+    JsonOutput(){
+        this(null);
+    }
+
+    JsonOutput(Writer writer){
+        this.writer = writer;
+    }
+
+    JsonOutput append(char c){
+        builder.append(c);
+        return this;
+    }
+
+    JsonOutput append(String text){
+        builder.append(text);
+        return this;
+    }
+
+    /**
+     * starts capturing the text written from this point, preventing the buffer being drained until the capture ends
+     * @return the position the capture starts at
+     */
+    int startCapture(){
+        captures++;
+        return builder.length();
+    }
+
+    /**
+     * @param start the position returned by {@link #startCapture()}
+     * @return the text written since the capture started
+     */
+    String endCapture(int start){
+        captures--;
+        return builder.substring(start);
+    }
+
+    /**
+     * drains the buffer into the writer if it is full and no capture is in progress
+     * @throws UncheckedIOException the writer failed
+     */
+    void checkpoint(){
+        if (writer == null || captures > 0 || builder.length() < FLUSH_THRESHOLD) return;
+        drain();
+    }
+
+    /**
+     * drains any remaining text into the writer
+     * @throws UncheckedIOException the writer failed
+     */
+    void drain(){
+        try {
+            writer.append(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        drained += builder.length();
+        builder.setLength(0);
+    }
+
+    int length(){
+        return builder.length();
+    }
+
+    /**
+     * @return the number of characters written, including those already drained into the writer
+     */
+    long written(){
+        return drained + builder.length();
+    }
+
+    @Override
+    public String toString(){
+        return builder.toString();
+    }
+}
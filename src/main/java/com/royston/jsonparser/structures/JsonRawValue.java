@@ -0,0 +1,105 @@
+package com.royston.jsonparser.structures;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+
+/**
+ * an object or array kept as its original json text rather than parsed into a {@link JsonStructure}. it can be stored in
+ * {@link JsonObject}, {@link JsonArray} and {@link com.royston.jsonparser.annotations.JsonProperty} fields and is written back verbatim,
+ * including its original whitespace, so a payload that is only forwarded is never parsed or re-encoded. the text is parsed the first time
+ * it is accessed as a structure. example usage:
+ * <pre>
+ * JsonObject message = JsonParser.parseJsonShallow(request, 1).getJsonObject();
+ * message.addValue("forwarded", true);
+ * String response = message.toString(0); // nested payloads are copied verbatim
+ * </pre>
+ */
+public final class JsonRawValue {
+
+    private final String json;
+    private volatile JsonStructure structure;
+
+    /**
+     * the text is written out verbatim, so it is checked to be a single valid object or array with nothing after it,
+     * which stops it from closing the structure it is written into
+     * @param json the raw json text of an object or array
+     * @throws InvalidJsonException the text is not a single valid json object or array
+     */
+    public JsonRawValue(String json){
+        RawJsonParser.check(json);
+        this.json = json;
+    }
+
+    /**
+     * creates a raw value without checking the text, which must already be known to be valid
+     * @param json the raw json text of an object or array
+     * @param structure the frozen structure the text encodes, or null to parse it on first access
+     */
+    JsonRawValue(String json, JsonStructure structure){
+        this.json = json;
+        this.structure = structure;
+    }
+
+    /**
+     * @param structure the structure to encode
+     * @return a raw value holding the compact encoding of the structure
+     */
+    public static JsonRawValue of(JsonStructure structure) {
+        return new JsonRawValue(structure.toString(0), structure.isFrozen() ? structure : null);
+    }
+
+    /**
+     * @return the raw json text
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * parses the raw text the first time it is called and returns the same frozen structure afterwards
+     * @return a frozen {@link JsonStructure} holding the parsed data
+     * @throws InvalidJsonException the raw text is not a valid json object or array
+     */
+    public JsonStructure getStructure() throws InvalidJsonException {
+        JsonStructure parsed = structure;
+        if (parsed == null) {
+            parsed = RawJsonParser.parse(json);
+            structure = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * @return true if the raw text has already been parsed
+     */
+    public boolean isParsed() {
+        return structure != null;
+    }
+
+    /**
+     * @return the raw json text
+     */
+    @Override
+    public String toString() {
+        return json;
+    }
+
+    /**
+     * compares raw values by their parsed content, like {@link JsonStructure#equals(Object)}, so values that differ only in
+     * whitespace or key order are equal. values with identical text are equal without being parsed
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof JsonRawValue)) return false;
+        JsonRawValue raw = (JsonRawValue)other;
+        return json.equals(raw.json) || getStructure().equals(raw.getStructure());
+    }
+
+    /**
+     * @return the hash of the parsed content, parsing the text if it has not been parsed yet
+     */
+    @Override
+    public int hashCode() {
+        return getStructure().hashCode();
+    }
+}
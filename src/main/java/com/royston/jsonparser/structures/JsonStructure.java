@@ -1,13 +1,76 @@
 package com.royston.jsonparser.structures;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
 import com.royston.jsonparser.exceptions.JsonTypeException;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation;
+import com.royston.jsonparser.instrumentation.JsonInstrumentation.Probe;
+import com.royston.jsonparser.instrumentation.PhaseMetrics.Phase;
 
 public abstract class JsonStructure {
 
+    public enum NumberComparison
+    {
+        EXACT,
+        NUMERIC
+    };
+
+    /**
+     * a cached indented encoding of a structure, only valid at the indentation it was written with
+     */
+    private static final class Fragment {
+        private final int indentLevel;
+        private final int indentAmount;
+        private final String text;
+
+        private Fragment(int indentLevel, int indentAmount, String text){
+            this.indentLevel = indentLevel;
+            this.indentAmount = indentAmount;
+            this.text = text;
+        }
+    }
+
+    private static final int PARENT_ARRAY_LIMIT = 8;
+
+    private boolean cacheFragments = false;
+    private boolean written = false;
+    private String compactFragment;
+    private Fragment indentedFragment;
+    private JsonStructure parent;
+    private JsonStructure[] otherParents;
+    private int otherParentCount = 0;
+    private IdentityHashMap<JsonStructure, Integer> manyParents;
+    private volatile long contentHash;
+    private boolean indexed = false;
+    private int version = 0;
+
     public abstract String toString();
 
     public abstract String toString(int indentAmount);
 
+    /**
+     * writes the structure as a raw json string to a {@link Writer}, draining the text as it is produced rather than building it all first
+     * @param writer the writer to write to, which is not flushed or closed
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
+     * @throws IOException the writer failed
+     */
+    public void write(Writer writer, int indentAmount) throws IOException {
+        Probe probe = JsonInstrumentation.start(Phase.WRITE);
+        JsonOutput output = new JsonOutput(writer);
+        try {
+            write(output, 1, indentAmount);
+            output.drain();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (probe != null) probe.end(-1, output.written(), -1, -1);
+    }
+
     public boolean isJsonArray(){
         return this instanceof JsonArray;
     }
@@ -23,4 +86,376 @@ public abstract class JsonStructure {
     public JsonObject getJsonObject(){
         throw new JsonTypeException("not a Json Object");
     }
+
+    /**
+     * creates a deeply immutable copy of the structure that is safe to share between threads without synchronisation.
+     * nested structures that are already frozen are shared rather than copied
+     * @return the frozen structure, or this instance if it is already frozen
+     */
+    public abstract JsonStructure freeze();
+
+    /**
+     * @return true if the structure and everything nested inside it is immutable
+     */
+    public abstract boolean isFrozen();
+
+    /**
+     * compares the structure with another by content. object keys are compared regardless of their order, and numbers are
+     * only equal if they have the same boxed type, so {@code 1} does not equal {@code 1.0}
+     * @param other the object to compare with
+     * @return true if other is a structure with equal content
+     */
+    @Override
+    public boolean equals(Object other){
+        return other instanceof JsonStructure && valuesEqual(this, other, NumberComparison.EXACT);
+    }
+
+    /**
+     * @return a hash of the structure's content, derived from {@link #contentHash()}
+     */
+    @Override
+    public int hashCode(){
+        long hash = contentHash();
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    /**
+     * compares the structure with another by content, ignoring the order of object keys
+     * @param other the structure to compare with
+     * @param numbers {@link NumberComparison#NUMERIC} to treat numbers as equal when their values are equal, e.g. {@code 1} and {@code 1.0}
+     * @return true if the structures have equal content
+     */
+    public boolean contentEquals(JsonStructure other, NumberComparison numbers){
+        return valuesEqual(this, other, numbers);
+    }
+
+    /**
+     * a 64-bit hash of the structure's content that is stable between runs. it is cached on every structure in the tree
+     * and discarded when the structure or anything nested inside it is modified, so hashing an unchanged subtree again is free.
+     * numbers hash by value and object keys regardless of their order, so structures equal under either {@link NumberComparison}
+     * have the same hash
+     * @return the content hash
+     */
+    public long contentHash(){
+        long hash = contentHash;
+        if (hash == 0) {
+            hash = computeHash();
+            if (hash == 0) hash = 1;
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * compares two json values by content. structures whose content hashes are both cached are compared by hash first.
+     * a {@link JsonRawValue} is compared by its parsed structure, so it equals a structure with the same content
+     * @param first the first json value
+     * @param second the second json value
+     * @param numbers how to compare numbers
+     * @return true if the values are equal
+     */
+    public static boolean valuesEqual(Object first, Object second, NumberComparison numbers){
+        if (first == second) return true;
+        if (first == null || second == null) return false;
+        if (first instanceof JsonRawValue) first = ((JsonRawValue)first).getStructure();
+        if (second instanceof JsonRawValue) second = ((JsonRawValue)second).getStructure();
+        if (first instanceof JsonStructure && second instanceof JsonStructure) {
+            JsonStructure firstStructure = (JsonStructure)first, secondStructure = (JsonStructure)second;
+            if (firstStructure.isJsonObject() != secondStructure.isJsonObject()) return false;
+            long firstHash = firstStructure.contentHash, secondHash = secondStructure.contentHash;
+            if (firstHash != 0 && secondHash != 0 && firstHash != secondHash) return false;
+            return firstStructure.sameContent(secondStructure, numbers);
+        }
+        if (numbers == NumberComparison.NUMERIC && first instanceof Number && second instanceof Number) {
+            if (isIntegral(first) && isIntegral(second)) return ((Number)first).longValue() == ((Number)second).longValue();
+            BigDecimal firstDecimal = toDecimal((Number)first), secondDecimal = toDecimal((Number)second);
+            if (firstDecimal != null && secondDecimal != null) return firstDecimal.compareTo(secondDecimal) == 0;
+        }
+        return first.equals(second);
+    }
+
+    /**
+     * @param value a json value
+     * @return a 64-bit hash of the value that is equal for values equal under either {@link NumberComparison}
+     */
+    static long valueHash(Object value){
+        if (value == null) return 0x6e756c6cL;
+        if (value instanceof JsonRawValue) return ((JsonRawValue)value).getStructure().contentHash();
+        if (value instanceof JsonStructure) return ((JsonStructure)value).contentHash();
+        if (value instanceof Boolean) return (Boolean)value ? 0x74727565L : 0x66616c7365L;
+        if (value instanceof String) {
+            String string = (String)value;
+            long hash = 0x737472L;
+            for (int i=0; i<string.length(); i++) hash = hash * 31 + string.charAt(i);
+            return mix(hash);
+        }
+        if (value instanceof Number) {
+            if (isIntegral(value)) return mix(((Number)value).longValue());
+            BigDecimal decimal = toDecimal((Number)value);
+            if (decimal == null) return mix(value.hashCode());
+            decimal = decimal.stripTrailingZeros();
+            if (decimal.scale() <= 0 && decimal.precision() - decimal.scale() <= 18) return mix(decimal.longValue());
+            return mix(decimal.unscaledValue().hashCode() * 31L + decimal.scale());
+        }
+        return mix(value.hashCode());
+    }
+
+    /**
+     * spreads the bits of a hash so that small differences in the input affect the whole output
+     */
+    static long mix(long hash){
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static boolean isIntegral(Object number){
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    private static BigDecimal toDecimal(Number number){
+        if (number instanceof BigDecimal) return (BigDecimal)number;
+        try {
+            return new BigDecimal(number.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * computes the content hash without consulting the cache
+     */
+    abstract long computeHash();
+
+    /**
+     * compares the content of two structures of the same kind
+     * @param other a structure of the same kind as this one
+     * @param numbers how to compare numbers
+     * @return true if the structures have equal content
+     */
+    abstract boolean sameContent(JsonStructure other, NumberComparison numbers);
+
+    /**
+     * enables or disables caching of the raw json written for this structure and every structure nested inside it.
+     * while enabled, writing splices the cached text of unchanged subtrees and only re-encodes those modified since they were
+     * last written. structures added later to a caching structure also cache. the cache keeps one compact and one indented
+     * encoding per structure, so enable it on large, mostly static documents that are written repeatedly. frozen structures are
+     * shared between threads, so they never cache and frozen structures nested inside this one are skipped
+     * @param enabled true to cache written fragments
+     * @throws UnsupportedOperationException the structure is frozen
+     */
+    public void setFragmentCaching(boolean enabled){
+        checkMutable();
+        cacheFragments = enabled;
+        if (!enabled) { compactFragment = null; indentedFragment = null; }
+        for (GenericJsonValue<Object> item : values()) {
+            Object value = item.getValue();
+            if (value instanceof JsonStructure && !((JsonStructure)value).isFrozen()) ((JsonStructure)value).setFragmentCaching(enabled);
+        }
+    }
+
+    public boolean isFragmentCaching(){
+        return cacheFragments;
+    }
+
+    /**
+     * @return the wrapped values held directly by this structure
+     */
+    abstract Iterable<GenericJsonValue<Object>> values();
+
+    /**
+     * writes the structure without consulting the fragment cache
+     * @param output the output to append the raw json to
+     * @param indentLevel the number of indentation blocks deep to start writing from
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
+     */
+    abstract void writeTo(JsonOutput output, int indentLevel, int indentAmount);
+
+    /**
+     * writes the structure, appending its cached fragment instead if one exists for the same indentation.
+     * frozen structures may be written by several threads at once, so they are written without touching any state
+     * @param output the output to append the raw json to
+     * @param indentLevel the number of indentation blocks deep to start writing from
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
+     */
+    final void write(JsonOutput output, int indentLevel, int indentAmount){
+        if (isFrozen()) { writeTo(output, indentLevel, indentAmount); return; }
+        written = true;
+        if (!cacheFragments) { writeTo(output, indentLevel, indentAmount); return; }
+        if (indentAmount == 0) {
+            String cached = compactFragment;
+            if (cached != null) { output.append(cached); return; }
+        }
+        else {
+            Fragment cached = indentedFragment;
+            if (cached != null && cached.indentLevel == indentLevel && cached.indentAmount == indentAmount) { output.append(cached.text); return; }
+        }
+        int start = output.startCapture();
+        writeTo(output, indentLevel, indentAmount);
+        if (indentAmount == 0) compactFragment = output.endCapture(start);
+        else indentedFragment = new Fragment(indentLevel, indentAmount, output.endCapture(start));
+    }
+
+    /**
+     * writes a single json value
+     * @param output the output to append the raw json to
+     * @param value the json value to write
+     * @param indentLevel the indentation level of the value
+     * @param indentAmount the amount of spaces to add for each indentation block, or 0 for compact output
+     */
+    static void writeValue(JsonOutput output, Object value, int indentLevel, int indentAmount){
+        if (value == null) output.append("null");
+        else if (value instanceof String) output.append('"').append((String)value).append('"');
+        else if (value instanceof JsonStructure) ((JsonStructure)value).write(output, indentLevel, indentAmount);
+        else output.append(value.toString());
+    }
+
+    /**
+     * starts a new line for the json string and applies the indentation amount. compact output has no new lines
+     * @param output the output to append the new line to
+     * @param indentLevel the number of indentation blocks deep to start writing from
+     * @param indentAmount the amount of spaces to add for each indentation block
+     */
+    static void newLine(JsonOutput output, int indentLevel, int indentAmount){
+        if (indentAmount == 0) return;
+        output.append('\n');
+        for (int i=0; i<indentLevel * indentAmount; i++) output.append(' ');
+    }
+
+    /**
+     * records that a value has been stored in this structure so later changes to it invalidate this structure's caches
+     * @param value the stored json value
+     */
+    void attach(Object value){
+        if (!(value instanceof JsonStructure)) return;
+        JsonStructure child = (JsonStructure)value;
+        if (child.isFrozen()) return;
+        if (cacheFragments && !child.cacheFragments) child.setFragmentCaching(true);
+        if (child.parent == null) child.parent = this;
+        else child.addOtherParent(this);
+    }
+
+    /**
+     * records that a value has been removed from this structure
+     * @param removed the removed wrapped json value, may be null
+     */
+    void detach(GenericJsonValue<Object> removed){
+        if (removed == null || !(removed.getValue() instanceof JsonStructure)) return;
+        JsonStructure child = (JsonStructure)removed.getValue();
+        if (child.parent != this) {
+            child.removeOtherParent(this);
+            return;
+        }
+        JsonStructure next = child.manyParents != null ? child.manyParents.keySet().iterator().next()
+            : child.otherParentCount > 0 ? child.otherParents[child.otherParentCount - 1] : null;
+        if (next != null) child.removeOtherParent(next);
+        child.parent = next;
+    }
+
+    /**
+     * records a further structure holding this one. a few parents are kept in an array that doubles as it fills, while a structure
+     * shared by more than {@value #PARENT_ARRAY_LIMIT} is moved to an identity map counting how many times each parent holds it,
+     * so attaching and detaching stay constant time however widely it is shared
+     */
+    private void addOtherParent(JsonStructure other){
+        if (manyParents != null) {
+            manyParents.merge(other, 1, Integer::sum);
+            return;
+        }
+        if (otherParents == null) otherParents = new JsonStructure[2];
+        else if (otherParentCount == PARENT_ARRAY_LIMIT) {
+            manyParents = new IdentityHashMap<>();
+            for (int i=0; i<otherParentCount; i++) manyParents.merge(otherParents[i], 1, Integer::sum);
+            manyParents.merge(other, 1, Integer::sum);
+            otherParents = null;
+            otherParentCount = 0;
+            return;
+        }
+        else if (otherParentCount == otherParents.length) otherParents = Arrays.copyOf(otherParents, otherParentCount * 2);
+        otherParents[otherParentCount++] = other;
+    }
+
+    /**
+     * removes one record of a further structure holding this one. the order of the parents does not matter, so a parent removed
+     * from the array is replaced by the last one
+     */
+    private void removeOtherParent(JsonStructure other){
+        if (manyParents != null) {
+            Integer count = manyParents.get(other);
+            if (count == null) return;
+            if (count > 1) manyParents.put(other, count - 1);
+            else manyParents.remove(other);
+            if (manyParents.isEmpty()) manyParents = null;
+            return;
+        }
+        for (int i=otherParentCount-1; i>=0; i--) {
+            if (otherParents[i] != other) continue;
+            otherParents[i] = otherParents[--otherParentCount];
+            otherParents[otherParentCount] = null;
+            if (otherParentCount == 0) otherParents = null;
+            return;
+        }
+    }
+
+    /**
+     * records that a {@link JsonIndex} has read a key through this structure, so modifying it must reach the indexed array
+     */
+    void markIndexed(){
+        indexed = true;
+    }
+
+    /**
+     * @return a counter that changes whenever this structure, or a structure nested inside it that is being tracked, is modified
+     */
+    int version(){
+        return version;
+    }
+
+    /**
+     * called after every mutation to discard state derived from the contents of this structure and of every structure containing it.
+     * a structure that has been neither written, hashed nor indexed since its last modification cannot be part of any cached fragment,
+     * hash or index, so propagation stops there
+     */
+    void modified(){
+        version++;
+        if (!written && contentHash == 0 && !indexed) return;
+        written = false;
+        indexed = false;
+        contentHash = 0;
+        compactFragment = null;
+        indentedFragment = null;
+        if (parent != null) parent.modified();
+        for (int i=0; i<otherParentCount; i++) otherParents[i].modified();
+        if (manyParents != null) for (JsonStructure other : manyParents.keySet()) other.modified();
+    }
+
+    /**
+     * @throws UnsupportedOperationException the structure is frozen
+     */
+    protected void checkMutable() throws UnsupportedOperationException {
+        if (isFrozen()) throw new UnsupportedOperationException("cannot modify a frozen json structure");
+    }
+
+    /**
+     * freezes a json value if it is a structure
+     * @param value the json value
+     * @return the frozen value
+     */
+    static Object freezeObject(Object value) {
+        return value instanceof JsonStructure ? ((JsonStructure)value).freeze() : value;
+    }
+
+    /**
+     * freezes the json value held by a wrapper, reusing the wrapper when its value is already immutable
+     * @param wrapper the wrapped json value
+     * @return a wrapper holding the frozen value
+     */
+    static GenericJsonValue<Object> freezeValue(GenericJsonValue<Object> wrapper) {
+        Object value = wrapper.getValue();
+        if (!(value instanceof JsonStructure) || ((JsonStructure)value).isFrozen()) return wrapper;
+        return new GenericJsonValue<>(((JsonStructure)value).freeze());
+    }
 }
@@ -0,0 +1,91 @@
+package com.royston.jsonparser.structures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * a read-only view of an array stored in an {@link OffHeapJsonDocument}. elements are decoded each time they are read,
+ * and any element can be reached in constant time through the array's offset table
+ */
+final class OffHeapJsonArray extends JsonArray {
+
+    private static final ArrayList<GenericJsonValue<Object>> EMPTY = new ArrayList<>(0);
+
+    private final OffHeapJsonDocument document;
+    private final int offset;
+    private final int size;
+
+    OffHeapJsonArray(OffHeapJsonDocument document, int offset){
+        super(EMPTY, true);
+        this.document = document;
+        this.offset = offset;
+        this.size = document.getInt(offset + 1);
+    }
+
+    @Override
+    public GenericJsonValue<Object> getValue(int index){
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        return new GenericJsonValue<>(document.read(valueOffset(index)));
+    }
+
+    @Override
+    public int length(){
+        return size;
+    }
+
+    @Override
+    public Iterator<GenericJsonValue<Object>> iterator(){
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext(){
+                return index < size;
+            }
+
+            @Override
+            public GenericJsonValue<Object> next(){
+                if (index >= size) throw new NoSuchElementException();
+                return getValue(index++);
+            }
+        };
+    }
+
+    /**
+     * copies the array onto the heap before applying the update
+     */
+    @Override
+    public JsonArray with(int index, Object value){
+        return ((JsonArray)document.copyToHeap(offset)).with(index, value);
+    }
+
+    @Override
+    public JsonArray freeze(){
+        return this;
+    }
+
+    @Override
+    Iterable<GenericJsonValue<Object>> values(){
+        return this;
+    }
+
+    @Override
+    void writeTo(JsonOutput output, int indentLevel, int indentAmount){
+        document.checkOpen();
+        if (size == 0) { output.append("[]"); return; }
+        output.append('[');
+        for (int i=0; i<size; i++){
+            if (i > 0) output.append(',');
+            newLine(output, indentLevel, indentAmount);
+            writeValue(output, document.read(valueOffset(i)), indentLevel + 1, indentAmount);
+            output.checkpoint();
+        }
+        newLine(output, indentLevel - 1, indentAmount);
+        output.append(']');
+    }
+
+    private int valueOffset(int index){
+        return document.getInt(offset + 5 + index * 4);
+    }
+}
@@ -0,0 +1,566 @@
+package com.royston.jsonparser.structures;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * a parsed json document stored outside of the java heap, either in direct memory or in a memory-mapped index file, so that
+ * very large documents add almost nothing for the garbage collector to trace. the document is navigated through a read-only
+ * {@link JsonObject} or {@link JsonArray} view whose values are decoded on access, and can be passed anywhere a {@link JsonStructure}
+ * is accepted, including {@link com.royston.jsonparser.serialiser.Serialiser#deserialise}. a document is limited to 2 GB.
+ * example usage:
+ * <pre>
+ * try (OffHeapJsonDocument document = JsonParser.parseJsonOffHeap(reader, new File("reference.idx"))) {
+ *     String name = document.getRoot().getJsonObject().getValue("name").getString();
+ * }
+ * // after a restart
+ * OffHeapJsonDocument document = OffHeapJsonDocument.open(new File("reference.idx"));
+ * </pre>
+ * reading from several threads is safe. closing the document makes its views throw on further use and frees the memory or
+ * mapping straight away, after waiting for any read still in progress on another thread to finish
+ */
+public final class OffHeapJsonDocument implements Closeable {
+
+    private static final int MAGIC = 0x4A534F4E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte STRING = 7;
+    static final byte NUMBER = 8;
+    static final byte OBJECT = 9;
+    static final byte ARRAY = 10;
+
+    private final ByteBuffer buffer;
+    private final int rootOffset;
+    private final boolean mapped;
+    private final LongAdder reads = new LongAdder();
+    private volatile boolean closed = false;
+
+    private OffHeapJsonDocument(ByteBuffer buffer, int rootOffset, boolean mapped){
+        this.buffer = buffer;
+        this.rootOffset = rootOffset;
+        this.mapped = mapped;
+    }
+
+    /**
+     * reopens an index file previously written by a file backed {@link Builder}, mapping it into memory without parsing anything
+     * @param indexFile the index file to open
+     * @return the mapped document
+     * @throws IOException the file could not be read or is not an off-heap json index
+     */
+    public static OffHeapJsonDocument open(File indexFile) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r"); FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) throw new IOException("not an off-heap json index: " + indexFile);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(12) != channel.size()) {
+                release(mapped);
+                throw new IOException("not an off-heap json index: " + indexFile);
+            }
+            return new OffHeapJsonDocument(mapped, mapped.getInt(8), true);
+        }
+    }
+
+    /**
+     * copies an existing structure into direct memory
+     * @param json the structure to copy
+     * @return the off-heap copy
+     * @throws IllegalArgumentException the structure holds a value that is not a json type
+     */
+    public static OffHeapJsonDocument of(JsonStructure json) {
+        Builder builder = new Builder();
+        copy(builder, json);
+        return builder.build();
+    }
+
+    private static void copy(Builder builder, Object value) {
+        if (value instanceof JsonObject) {
+            JsonObject object = (JsonObject)value;
+            builder.startObject();
+            for (String key : object.keys()) {
+                builder.key(key);
+                copy(builder, object.getValue(key).getValue());
+            }
+            builder.end();
+        }
+        else if (value instanceof JsonArray) {
+            builder.startArray();
+            for (GenericJsonValue<Object> item : (JsonArray)value) copy(builder, item.getValue());
+            builder.end();
+        }
+        else if (value instanceof JsonRawValue) copy(builder, ((JsonRawValue)value).getStructure());
+        else builder.value(value);
+    }
+
+    /**
+     * @return a read-only {@link JsonObject} or {@link JsonArray} view of the root of the document
+     * @throws IllegalStateException the document has been closed
+     */
+    public JsonStructure getRoot() {
+        return (JsonStructure)read(rootOffset);
+    }
+
+    /**
+     * copies the whole document into ordinary heap structures, which can then be modified
+     * @return a new {@link JsonObject} or {@link JsonArray} holding the document's data
+     * @throws IllegalStateException the document has been closed
+     */
+    public JsonStructure copyToHeap() {
+        return (JsonStructure)copyToHeap(rootOffset);
+    }
+
+    /**
+     * @param offset the offset of a value
+     * @return the value, with containers copied into new heap structures
+     */
+    Object copyToHeap(int offset) {
+        checkOpen();
+        byte tag = tag(offset);
+        if (tag == OBJECT) {
+            JsonObject copy = new JsonObject();
+            int size = getInt(offset + 1);
+            for (int i=0; i<size; i++) copy.addValue(readString(getInt(offset + 5 + i * 8)), copyToHeap(getInt(offset + 9 + i * 8)));
+            return copy;
+        }
+        if (tag == ARRAY) {
+            JsonArray copy = new JsonArray();
+            int size = getInt(offset + 1);
+            for (int i=0; i<size; i++) copy.addValue(copyToHeap(getInt(offset + 5 + i * 4)));
+            return copy;
+        }
+        return read(offset);
+    }
+
+    /**
+     * @return the number of bytes the document occupies outside of the heap
+     */
+    public long size() {
+        return buffer.limit();
+    }
+
+    /**
+     * @return true if the document is backed by a memory-mapped index file rather than direct memory
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * stops the document and its views from being read, then releases the off-heap memory or file mapping once every read already
+     * in progress has finished, so the index file can be deleted or replaced straight afterwards. must not be called from a read
+     * of this document, e.g. while writing one of its views
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        while (reads.sum() != 0) Thread.yield();
+        release(buffer);
+    }
+
+    void checkOpen() {
+        if (closed) throw new IllegalStateException("off-heap json document has been closed");
+    }
+
+    /**
+     * starts a read of the buffer, which {@link #close} waits for before freeing it. the count is raised before the closed flag is
+     * checked, so either close sees the read in progress or the read sees the document closed
+     */
+    private void beginRead() {
+        reads.increment();
+        if (closed) {
+            reads.decrement();
+            checkOpen();
+        }
+    }
+
+    private void endRead() {
+        reads.decrement();
+    }
+
+    byte tag(int offset) {
+        beginRead();
+        try {
+            return buffer.get(offset);
+        } finally {
+            endRead();
+        }
+    }
+
+    int getInt(int offset) {
+        beginRead();
+        try {
+            return buffer.getInt(offset);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * decodes the value stored at an offset, returning containers as views
+     * @param offset the offset of the value
+     * @return the decoded json value
+     */
+    Object read(int offset) {
+        beginRead();
+        try {
+            switch (buffer.get(offset)) {
+                case NULL: return null;
+                case FALSE: return Boolean.FALSE;
+                case TRUE: return Boolean.TRUE;
+                case INT: return buffer.getInt(offset + 1);
+                case LONG: return buffer.getLong(offset + 1);
+                case FLOAT: return buffer.getFloat(offset + 1);
+                case DOUBLE: return buffer.getDouble(offset + 1);
+                case STRING: return decodeString(offset);
+                case NUMBER: return new BigDecimal(decodeString(offset));
+                case OBJECT: return new OffHeapJsonObject(this, offset);
+                case ARRAY: return new OffHeapJsonArray(this, offset);
+                default: throw new IllegalStateException("corrupt off-heap json document at offset " + offset);
+            }
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * @param offset the offset of a string value
+     * @return the decoded string
+     */
+    String readString(int offset) {
+        beginRead();
+        try {
+            return decodeString(offset);
+        } finally {
+            endRead();
+        }
+    }
+
+    private String decodeString(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset + 1)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 5);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * compares a string value with utf-8 encoded bytes without decoding it
+     * @param offset the offset of a string value
+     * @param bytes the utf-8 bytes to compare with
+     * @return true if the string is equal to the bytes
+     */
+    boolean stringEquals(int offset, byte[] bytes) {
+        beginRead();
+        try {
+            if (buffer.getInt(offset + 1) != bytes.length) return false;
+            for (int i=0; i<bytes.length; i++) if (buffer.get(offset + 5 + i) != bytes[i]) return false;
+            return true;
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * frees a direct or mapped buffer straight away where the runtime allows it, otherwise leaves it to the garbage collector.
+     * only used for buffers that nothing can read any more
+     */
+    private static void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) return;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {}
+    }
+
+    /**
+     * writes a document value by value, in direct memory or straight to an index file, so the document never has to exist on the heap.
+     * values are written before the containers holding them, and each container stores a table of offsets to its values,
+     * giving constant time access to array elements. repeated object keys are stored once. example usage:
+     * <pre>
+     * OffHeapJsonDocument document = new OffHeapJsonDocument.Builder()
+     *     .startObject().key("ids").startArray().value(1).value(2).end().end()
+     *     .build();
+     * </pre>
+     * instances are not thread safe
+     */
+    public static final class Builder implements Closeable {
+
+        private static final int KEY_CACHE_LIMIT = 4096;
+
+        private final ByteBuffer scratch = ByteBuffer.allocateDirect(64 * 1024);
+        private final FileChannel channel;
+        private final File indexFile;
+        private final Map<String, Integer> keys = new HashMap<>();
+        private ByteBuffer memory;
+        private long flushed = HEADER_SIZE;
+
+        private int[][] children = new int[16][];
+        private int[] counts = new int[16];
+        private boolean[] objects = new boolean[16];
+        private int depth = 0;
+        private boolean expectingKey = false;
+        private int rootOffset = -1;
+        private boolean built = false;
+
+        /**
+         * creates a builder that stores the document in direct memory
+         */
+        public Builder(){
+            this.channel = null;
+            this.indexFile = null;
+            this.memory = ByteBuffer.allocateDirect(1024 * 1024);
+        }
+
+        /**
+         * creates a builder that writes the document to an index file, which is memory-mapped once built and can later be reopened
+         * with {@link OffHeapJsonDocument#open(File)}
+         * @param indexFile the index file to create or overwrite
+         * @throws IOException the file could not be created
+         */
+        public Builder(File indexFile) throws IOException {
+            this.indexFile = indexFile;
+            this.channel = new RandomAccessFile(indexFile, "rw").getChannel();
+            this.channel.truncate(0);
+        }
+
+        /**
+         * opens a nested object, or the root object
+         * @return this builder
+         */
+        public Builder startObject() {
+            return start(true);
+        }
+
+        /**
+         * opens a nested array, or the root array
+         * @return this builder
+         */
+        public Builder startArray() {
+            return start(false);
+        }
+
+        /**
+         * sets the key of the next value of the currently open object
+         * @param key the json string key
+         * @return this builder
+         * @throws IllegalStateException no object is open or a key has already been given
+         */
+        public Builder key(String key) {
+            if (depth == 0 || !objects[depth - 1] || !expectingKey) throw new IllegalStateException("a key is not expected here");
+            Integer offset = keys.get(key);
+            if (offset == null) {
+                offset = writeString(STRING, key);
+                if (keys.size() < KEY_CACHE_LIMIT) keys.put(key, offset);
+            }
+            addChild(offset);
+            expectingKey = false;
+            return this;
+        }
+
+        /**
+         * adds a json value to the currently open object or array
+         * @param value a {@link String}, {@link Number}, {@link Boolean} or null
+         * @return this builder
+         * @throws IllegalArgumentException the value is not a json primitive
+         * @throws IllegalStateException no container is open, or an object key is missing
+         */
+        public Builder value(Object value) {
+            if (depth == 0) throw new IllegalStateException("the root must be an object or array");
+            checkValueExpected();
+            int offset = position();
+            if (value == null) put(NULL);
+            else if (value instanceof Boolean) put((Boolean)value ? TRUE : FALSE);
+            else if (value instanceof Integer || value instanceof Short || value instanceof Byte) { put(INT); ensure(4); scratch.putInt(((Number)value).intValue()); }
+            else if (value instanceof Long) { put(LONG); ensure(8); scratch.putLong((Long)value); }
+            else if (value instanceof Float) { put(FLOAT); ensure(4); scratch.putFloat((Float)value); }
+            else if (value instanceof Double) { put(DOUBLE); ensure(8); scratch.putDouble((Double)value); }
+            else if (value instanceof Number) writeString(NUMBER, value.toString());
+            else if (value instanceof String) writeString(STRING, (String)value);
+            else throw new IllegalArgumentException("a " + value.getClass().getName() + " cannot be stored in an off-heap json document");
+            return addValue(offset);
+        }
+
+        /**
+         * closes the currently open object or array
+         * @return this builder
+         * @throws IllegalStateException no container is open, or an object key has no value
+         */
+        public Builder end() {
+            if (depth == 0 || (objects[depth - 1] && !expectingKey)) throw new IllegalStateException("cannot close the container here");
+            depth--;
+            int count = counts[depth];
+            int[] offsets = children[depth];
+            int offset = position();
+            put(objects[depth] ? OBJECT : ARRAY);
+            ensure(4);
+            scratch.putInt(objects[depth] ? count / 2 : count);
+            for (int i=0; i<count; i++) {
+                ensure(4);
+                scratch.putInt(offsets[i]);
+            }
+            if (offsets.length > 1024) children[depth] = null;
+            if (depth == 0) {
+                rootOffset = offset;
+                return this;
+            }
+            return addValue(offset);
+        }
+
+        /**
+         * finishes the document. a file backed document is memory-mapped read-only and the builder's file handle is closed
+         * @return the finished document
+         * @throws IllegalStateException the root has not been closed
+         * @throws UncheckedIOException the index file could not be written
+         */
+        public OffHeapJsonDocument build() {
+            if (built) throw new IllegalStateException("the document has already been built");
+            if (rootOffset < 0 || depth > 0) throw new IllegalStateException("the root object or array has not been closed");
+            int size = position();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(rootOffset).putInt(size);
+            header.flip();
+            try {
+                flush();
+                release(scratch);
+                built = true;
+                if (channel == null) {
+                    memory.position(0).limit(size);
+                    memory.put(header).position(0);
+                    return new OffHeapJsonDocument(memory, rootOffset, false);
+                }
+                while (header.hasRemaining()) channel.write(header, header.position());
+                channel.force(false);
+                channel.close();
+                return open(indexFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * abandons an unfinished document, freeing its memory or closing its index file
+         * @throws IOException the index file could not be closed
+         */
+        @Override
+        public void close() throws IOException {
+            if (built) return;
+            release(scratch);
+            if (memory != null) release(memory);
+            if (channel != null) channel.close();
+        }
+
+        private Builder start(boolean object) {
+            checkValueExpected();
+            if (depth == objects.length) {
+                children = Arrays.copyOf(children, depth * 2);
+                counts = Arrays.copyOf(counts, depth * 2);
+                objects = Arrays.copyOf(objects, depth * 2);
+            }
+            if (children[depth] == null) children[depth] = new int[16];
+            counts[depth] = 0;
+            objects[depth] = object;
+            depth++;
+            expectingKey = object;
+            return this;
+        }
+
+        private void checkValueExpected() {
+            if (depth == 0) {
+                if (rootOffset >= 0) throw new IllegalStateException("the root has already been closed");
+                return;
+            }
+            if (objects[depth - 1] && expectingKey) throw new IllegalStateException("an object value needs a key");
+        }
+
+        private Builder addValue(int offset) {
+            addChild(offset);
+            expectingKey = objects[depth - 1];
+            return this;
+        }
+
+        private void addChild(int offset) {
+            int level = depth - 1;
+            if (counts[level] == children[level].length) children[level] = Arrays.copyOf(children[level], counts[level] * 2);
+            children[level][counts[level]++] = offset;
+        }
+
+        private int writeString(byte tag, String value) {
+            int offset = position();
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            put(tag);
+            ensure(4);
+            scratch.putInt(bytes.length);
+            for (int i=0; i<bytes.length; i += scratch.capacity()) {
+                int length = Math.min(bytes.length - i, scratch.capacity());
+                ensure(length);
+                scratch.put(bytes, i, length);
+            }
+            return offset;
+        }
+
+        private void put(byte tag) {
+            ensure(1);
+            scratch.put(tag);
+        }
+
+        private int position() {
+            long position = flushed + scratch.position();
+            if (position > Integer.MAX_VALUE) throw new IllegalStateException("off-heap json documents are limited to 2 GB");
+            return (int)position;
+        }
+
+        private void ensure(int bytes) {
+            if (scratch.remaining() >= bytes) return;
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flush() throws IOException {
+            scratch.flip();
+            if (channel != null) {
+                while (scratch.hasRemaining()) flushed += channel.write(scratch, flushed);
+            }
+            else {
+                if (memory.capacity() - flushed < scratch.remaining()) {
+                    long required = flushed + scratch.remaining();
+                    if (required > Integer.MAX_VALUE) throw new IllegalStateException("off-heap json documents are limited to 2 GB");
+                    ByteBuffer grown = ByteBuffer.allocateDirect((int)Math.min(Integer.MAX_VALUE, Math.max(required, memory.capacity() * 2L)));
+                    memory.position(0).limit((int)flushed);
+                    grown.put(memory);
+                    release(memory);
+                    memory = grown;
+                }
+                memory.position((int)flushed);
+                flushed += scratch.remaining();
+                memory.put(scratch);
+            }
+            scratch.clear();
+        }
+    }
+}
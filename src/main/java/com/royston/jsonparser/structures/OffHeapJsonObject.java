@@ -0,0 +1,122 @@
+package com.royston.jsonparser.structures;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * a read-only view of an object stored in an {@link OffHeapJsonDocument}. values are decoded each time they are read and keys are
+ * compared as utf-8 bytes in place, so looking up a key scans the object's key table
+ */
+final class OffHeapJsonObject extends JsonObject {
+
+    private static final LinkedHashMap<String, GenericJsonValue<Object>> EMPTY = new LinkedHashMap<>(0);
+
+    private final OffHeapJsonDocument document;
+    private final int offset;
+    private final int size;
+
+    OffHeapJsonObject(OffHeapJsonDocument document, int offset){
+        super(EMPTY, true);
+        this.document = document;
+        this.offset = offset;
+        this.size = document.getInt(offset + 1);
+    }
+
+    @Override
+    public GenericJsonValue<Object> getValue(String key){
+        int index = indexOf(key);
+        return index < 0 ? null : new GenericJsonValue<>(document.read(valueOffset(index)));
+    }
+
+    @Override
+    public boolean containsKey(String key){
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public List<String> keys(){
+        document.checkOpen();
+        List<String> keys = new ArrayList<>(size);
+        for (int i=0; i<size; i++) keys.add(document.readString(keyOffset(i)));
+        return keys;
+    }
+
+    /**
+     * copies the object onto the heap before applying the update
+     */
+    @Override
+    public JsonObject with(String key, Object value){
+        return ((JsonObject)document.copyToHeap(offset)).with(key, value);
+    }
+
+    @Override
+    public JsonObject freeze(){
+        return this;
+    }
+
+    @Override
+    Iterable<GenericJsonValue<Object>> values(){
+        document.checkOpen();
+        List<GenericJsonValue<Object>> values = new ArrayList<>(size);
+        for (int i=0; i<size; i++) values.add(new GenericJsonValue<>(document.read(valueOffset(i))));
+        return values;
+    }
+
+    @Override
+    int size(){
+        return size;
+    }
+
+    @Override
+    long computeHash(){
+        document.checkOpen();
+        long hash = 0x6f626aL;
+        for (int i=0; i<size; i++) hash += mix(valueHash(document.readString(keyOffset(i))) * 31 + valueHash(document.read(valueOffset(i))));
+        return mix(hash);
+    }
+
+    @Override
+    boolean sameContent(JsonStructure other, NumberComparison numbers){
+        JsonObject object = (JsonObject)other;
+        if (size != object.size()) return false;
+        document.checkOpen();
+        for (int i=0; i<size; i++) {
+            GenericJsonValue<Object> value = object.getValue(document.readString(keyOffset(i)));
+            if (value == null || !valuesEqual(document.read(valueOffset(i)), value.getValue(), numbers)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    void writeTo(JsonOutput output, int indentLevel, int indentAmount){
+        document.checkOpen();
+        if (size == 0) { output.append("{}"); return; }
+        output.append('{');
+        for (int i=0; i<size; i++){
+            if (i > 0) output.append(',');
+            newLine(output, indentLevel, indentAmount);
+            output.append('"').append(document.readString(keyOffset(i))).append(indentAmount == 0 ? "\":" : "\": ");
+            writeValue(output, document.read(valueOffset(i)), indentLevel + 1, indentAmount);
+            output.checkpoint();
+        }
+        newLine(output, indentLevel - 1, indentAmount);
+        output.append('}');
+    }
+
+    private int indexOf(String key){
+        document.checkOpen();
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        for (int i=0; i<size; i++) if (document.stringEquals(keyOffset(i), bytes)) return i;
+        return -1;
+    }
+
+    private int keyOffset(int index){
+        return document.getInt(offset + 5 + index * 8);
+    }
+
+    private int valueOffset(int index){
+        return document.getInt(offset + 9 + index * 8);
+    }
+}
@@ -0,0 +1,192 @@
+package com.royston.jsonparser.structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import com.royston.jsonparser.exceptions.InvalidJsonException;
+
+/**
+ * checks and parses the text of a {@link JsonRawValue}. the parser package builds on this package and so cannot be used from it,
+ * so this follows the same grammar and number rules with an explicit stack of open containers. parsed containers are created
+ * frozen as they close, rather than built mutable and copied by {@link JsonStructure#freeze()}
+ */
+final class RawJsonParser {
+
+    private static final int MAX_DEPTH = 1000;
+
+    private final String json;
+    private final boolean build;
+    private int position = 0;
+    private Object[] containers = new Object[16];
+    private String[] keys = new String[16];
+    private boolean[] objects = new boolean[16];
+    private int depth = 0;
+    private JsonStructure root;
+
+    private RawJsonParser(String json, boolean build){
+        this.json = json;
+        this.build = build;
+    }
+
+    /**
+     * checks that the text is a single json object or array with nothing but whitespace after it, without building anything
+     * @param json the text to check
+     * @throws InvalidJsonException the text is not a single valid json object or array
+     */
+    static void check(String json) throws InvalidJsonException {
+        new RawJsonParser(json, false).parse();
+    }
+
+    /**
+     * @param json the text to parse
+     * @return a frozen {@link JsonStructure} holding the parsed data
+     * @throws InvalidJsonException the text is not a single valid json object or array
+     */
+    static JsonStructure parse(String json) throws InvalidJsonException {
+        RawJsonParser parser = new RawJsonParser(json, true);
+        parser.parse();
+        return parser.root;
+    }
+
+    private void parse() {
+        int c = skipWhitespace();
+        if (c != '{' && c != '[') throw new InvalidJsonException("json string does not start with an object or array");
+        position++;
+        open(c == '{');
+        boolean first = true;
+        while (depth > 0) {
+            boolean object = objects[depth - 1];
+            c = skipWhitespace();
+            if (first && c == (object ? '}' : ']')) {
+                position++;
+                close();
+            }
+            else {
+                if (object) {
+                    if (c != '"') throw new InvalidJsonException("Invalid Json");
+                    position++;
+                    keys[depth - 1] = readString();
+                    if (skipWhitespace() != ':') throw new InvalidJsonException("Invalid Json");
+                    position++;
+                    c = skipWhitespace();
+                }
+                if (c == '{' || c == '[') {
+                    position++;
+                    open(c == '{');
+                    first = true;
+                    continue;
+                }
+                add(readValue(c));
+            }
+            first = false;
+            while (depth > 0) {
+                c = skipWhitespace();
+                position++;
+                if (c == ',') break;
+                if (c != (objects[depth - 1] ? '}' : ']')) throw new InvalidJsonException(c == -1 ? "unexpected end of json input" : "Invalid Json");
+                close();
+            }
+        }
+        if (skipWhitespace() != -1) throw new InvalidJsonException("unexpected data after the end of the json");
+    }
+
+    private void open(boolean object) {
+        if (depth == MAX_DEPTH) throw new InvalidJsonException("json is nested deeper than the maximum depth of " + MAX_DEPTH);
+        if (depth == objects.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        if (build) containers[depth] = object ? new LinkedHashMap<String, GenericJsonValue<Object>>() : new ArrayList<GenericJsonValue<Object>>();
+        objects[depth++] = object;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void close() {
+        depth--;
+        if (!build) return;
+        JsonStructure structure = objects[depth]
+            ? new JsonObject((LinkedHashMap<String, GenericJsonValue<Object>>)containers[depth], true)
+            : new JsonArray((ArrayList<GenericJsonValue<Object>>)containers[depth], true);
+        containers[depth] = null;
+        if (depth == 0) root = structure;
+        else add(structure);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(Object value) {
+        if (!build) return;
+        int level = depth - 1;
+        if (objects[level]) ((LinkedHashMap<String, GenericJsonValue<Object>>)containers[level]).put(keys[level], new GenericJsonValue<>(value));
+        else ((ArrayList<GenericJsonValue<Object>>)containers[level]).add(new GenericJsonValue<>(value));
+    }
+
+    private Object readValue(int c) {
+        switch (c) {
+            case '"':
+                position++;
+                return readString();
+            case 'n': return literal("null", null);
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            default:
+                int start = position;
+                while (position < json.length() && isNumberChar(json.charAt(position))) position++;
+                if (position == start) throw new InvalidJsonException(c == -1 ? "unexpected end of json input" : "Invalid Json");
+                return parseNumber(json.substring(start, position));
+        }
+    }
+
+    /**
+     * reads the rest of a string whose opening quote has been consumed. escape sequences are kept as written, as the parser keeps them
+     */
+    private String readString() {
+        int start = position;
+        while (true) {
+            if (position >= json.length()) throw new InvalidJsonException("unexpected end of json input");
+            char c = json.charAt(position++);
+            if (c == '"') return build ? json.substring(start, position - 1) : null;
+            if (c == '\\') position++;
+        }
+    }
+
+    private Object literal(String literal, Object value) {
+        if (!json.startsWith(literal, position)) throw new InvalidJsonException("Invalid Json");
+        position += literal.length();
+        return value;
+    }
+
+    /**
+     * boxes a number the way the parser package does: the smallest integer type that holds it, a float for at most 6 decimal
+     * places and a double otherwise
+     */
+    private Object parseNumber(String number) {
+        try {
+            if (number.indexOf('.') < 0) {
+                try {
+                    return Integer.valueOf(number);
+                } catch (NumberFormatException e) {
+                    return Long.valueOf(number);
+                }
+            }
+            if (number.length() - number.indexOf('.') - 1 <= 6) return Float.valueOf(number);
+            return Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw new InvalidJsonException("Invalid Json");
+        }
+    }
+
+    private int skipWhitespace() {
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            position++;
+        }
+        return -1;
+    }
+
+    private static boolean isNumberChar(int c) {
+        return c == '-' || (c >= '0' && c <= '9') || c == '.';
+    }
+}
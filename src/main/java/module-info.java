@@ -1,7 +1,12 @@
 open module jsonparser {
+    requires static jdk.jfr;
+    requires static jdk.management;
+
     exports com.royston.jsonparser.annotations;
     exports com.royston.jsonparser.exceptions;
+    exports com.royston.jsonparser.instrumentation;
     exports com.royston.jsonparser.parser;
+    exports com.royston.jsonparser.patch;
     exports com.royston.jsonparser.serialiser;
     exports com.royston.jsonparser.structures;
 }
\ No newline at end of file